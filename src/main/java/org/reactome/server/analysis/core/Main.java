@@ -68,7 +68,8 @@ public class Main {
         InteractorsBuilder interactorsBuilder = new InteractorsBuilder();
         interactorsBuilder.build(hierarchyBuilder.getHierarchies().keySet(), entitiesBuilder.getEntitiesContainer(), interactionsService);
 
-        calculateNumbersInHierarchyNodesForMainResources(hierarchyBuilder, entitiesBuilder, interactorsBuilder);
+        HierarchyIndex hierarchyIndex = new HierarchyIndex(hierarchyBuilder.getHierarchies(), hierarchyBuilder.getPathwayLocation());
+        calculateNumbersInHierarchyNodesForMainResources(hierarchyBuilder, entitiesBuilder, interactorsBuilder, hierarchyIndex);
         Long built = System.currentTimeMillis();
 
         GeneralService generalService = ReactomeGraphCore.getService(GeneralService.class);
@@ -78,6 +79,7 @@ public class Main {
         DataContainer container = new DataContainer(databaseInfo,
                 hierarchyBuilder.getHierarchies(),
                 hierarchyBuilder.getPathwayLocation(),
+                hierarchyIndex,
                 entitiesBuilder.getEntitiesContainer(),
                 entitiesBuilder.getEntitiesMap(),
                 interactorsBuilder.getInteractorsMap());
@@ -95,22 +97,19 @@ public class Main {
 
     private static void calculateNumbersInHierarchyNodesForMainResources(HierarchyBuilder hierarchyBuilder,
                                                                          EntitiesBuilder entitiesBuilder,
-                                                                         InteractorsBuilder interactorsBuilder) {
+                                                                         InteractorsBuilder interactorsBuilder,
+                                                                         HierarchyIndex hierarchyIndex) {
 
-        MapSet<Long, PathwayNode> pathwayLocation = hierarchyBuilder.getPathwayLocation();
+        //The hierarchies themselves (not a clone) are the ones counted
+        HierarchiesData hierarchies = new HierarchiesData(hierarchyBuilder.getHierarchies(), hierarchyBuilder.getPathwayLocation(), hierarchyIndex);
         EntitiesContainer entitiesContainer = entitiesBuilder.getEntitiesContainer();
         IdentifiersMap<InteractorNode> interactorsMap = interactorsBuilder.getInteractorsMap();
 
-        for (EntityNode physicalEntityNode : entitiesContainer.getAllNodes()) {
+        for (EntityNode physicalEntityNode : entitiesContainer.nodes()) {
             MainIdentifier mainIdentifier = physicalEntityNode.getIdentifier();
             if (mainIdentifier != null) {
                 for (Long pathwayId : physicalEntityNode.getPathwayIds()) {
-                    Set<PathwayNode> pNodes = pathwayLocation.getElements(pathwayId);
-                    if (pNodes == null) continue;
-                    for (PathwayNode pathwayNode : pNodes) {
-                        Set<AnalysisReaction> reactions = physicalEntityNode.getReactions(pathwayId);
-                        pathwayNode.process(mainIdentifier, reactions);
-                    }
+                    hierarchies.process(pathwayId, mainIdentifier, mainIdentifier, physicalEntityNode.getReactions(pathwayId));
                 }
             }
         }
@@ -121,10 +120,7 @@ public class Main {
             for (Long pathwayId : pathwayReactions.keySet()) {
                 for (MainIdentifier mainIdentifier : interactorNode.getInteractsWith(pathwayId)) {
                     Set<AnalysisReaction> reactions = pathwayReactions.getElements(pathwayId);
-                    Set<PathwayNode> pNodes = pathwayLocation.getElements(pathwayId);
-                    for (PathwayNode pNode : pNodes) {
-                        pNode.processInteractor(identifier, mainIdentifier, reactions);
-                    }
+                    hierarchies.processInteractor(pathwayId, identifier, mainIdentifier, reactions);
                 }
             }
         }
@@ -16,10 +16,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -43,19 +41,62 @@ public class EnrichmentAnalysis {
     public HierarchiesData overRepresentation(Set<AnalysisIdentifier> identifiers, SpeciesNode speciesNode, boolean includeInteractors) {
         this.increaseCounter();
         HierarchiesData hierarchiesData = HierarchiesDataContainer.take();
-        this.analyse(hierarchiesData, identifiers, speciesNode, includeInteractors);
+        this.analyse(hierarchiesData, identifiers, speciesNode, includeInteractors, null);
         this.decreaseCounter();
         return hierarchiesData;
     }
 
+    /**
+     * Analyses several samples at once (e.g. the columns of an expression file once thresholded). Each identifier is
+     * looked up (and projected) only once no matter the number of samples it is in, and then every sample is scored
+     * against its own copy of the hierarchies, so the results are the same as analysing the samples one by one.
+     * <p>
+     * PLEASE NOTE: The copies of the hierarchies of all the samples are kept until the method returns, so for a big
+     * number of samples use overRepresentation(samples, speciesNode, includeInteractors, consumer) instead
+     *
+     * @return the hierarchies data of each sample (in the same order)
+     */
+    public List<HierarchiesData> overRepresentation(List<Set<AnalysisIdentifier>> samples, SpeciesNode speciesNode, boolean includeInteractors) {
+        List<HierarchiesData> rtn = new ArrayList<>(samples.size());
+        this.overRepresentation(samples, speciesNode, includeInteractors, rtn::add);
+        return rtn;
+    }
+
+    /**
+     * Analyses several samples at once (see overRepresentation(samples, speciesNode, includeInteractors)) handing the
+     * hierarchies data of each sample to the consumer as soon as it is scored, so only one copy of the hierarchies is
+     * needed at a time when the consumer does not keep them (e.g. it stores the result of the sample)
+     *
+     * @param consumer receives the hierarchies data of each sample (in the same order)
+     */
+    public void overRepresentation(List<Set<AnalysisIdentifier>> samples, SpeciesNode speciesNode, boolean includeInteractors,
+                                   Consumer<HierarchiesData> consumer) {
+        this.increaseCounter();
+        long start = System.currentTimeMillis();
+        Map<AnalysisIdentifier, Lookup> lookups = new HashMap<>();
+        try {
+            for (Set<AnalysisIdentifier> identifiers : samples) {
+                HierarchiesData hierarchiesData = HierarchiesDataContainer.take();
+                this.analyse(hierarchiesData, identifiers, speciesNode, includeInteractors, lookups);
+                consumer.accept(hierarchiesData);
+            }
+        } finally {
+            this.decreaseCounter();
+        }
+        logger.info("Batch analysis for {} sample(s) ({} distinct identifier(s)) performed in {} ms",
+                    samples.size(), lookups.size(), System.currentTimeMillis() - start);
+    }
+
     public static long getAnalysisCount() {
         return ANALYSIS_COUNT;
     }
 
-    private void analyse(HierarchiesData hierarchies, Set<AnalysisIdentifier> identifiers, SpeciesNode speciesNode, boolean includeInteractors) {
+    /**
+     * @param lookups the identifiers already looked up (null when there is no need to keep them)
+     */
+    private void analyse(HierarchiesData hierarchies, Set<AnalysisIdentifier> identifiers, SpeciesNode speciesNode, boolean includeInteractors,
+                         Map<AnalysisIdentifier, Lookup> lookups) {
         final int originalSampleSize = identifiers.size();
-        IdentifiersMap<EntityNode> entitiesMap = analysisData.getEntitiesMap();
-        IdentifiersMap<InteractorNode> interactorsMap = analysisData.getInteractorsMap();
 
         logger.trace("Analysing: {} identifier(s). Including interactors: {}. Project to species: {}",
                      originalSampleSize, includeInteractors, (speciesNode == null ? false : speciesNode.getName()));
@@ -64,34 +105,29 @@ public class EnrichmentAnalysis {
 
         Set<MainIdentifier> newSample = new HashSet<>();
         for (AnalysisIdentifier identifier : identifiers) {
-            MapSet<Resource, EntityNode> resourceEntities = entitiesMap.get(identifier);
+            Lookup lookup = lookups == null ?
+                    lookup(identifier, speciesNode, includeInteractors) :
+                    lookups.computeIfAbsent(identifier, i -> lookup(i, speciesNode, includeInteractors));
             boolean found = false;
-            for (Resource resource : resourceEntities.keySet()) {
+            for (Resource resource : lookup.entities.keySet()) {
                 Identifier otherIdentifier = new OtherIdentifier(resource, identifier);
-                for (EntityNode node : resourceEntities.getElements(resource)) {
-                    if (speciesNode != null) node = node.getProjection(speciesNode);
-                    if (node == null) continue;
+                for (EntityNode node : lookup.entities.getElements(resource)) {
                     found = true;
                     MainIdentifier mainAux = node.getIdentifier();
                     if (mainAux != null) {
-                        //Create a copy of the main identifier and add to it the expression values of the analysed one
-                        AnalysisIdentifier ai = new AnalysisIdentifier(mainAux.getValue().getId(), otherIdentifier.getValue().getExp());
+                        //Create a copy of the main identifier sharing the expression values of the analysed one
+                        AnalysisIdentifier ai = new AnalysisIdentifier(mainAux.getValue().getId(), otherIdentifier.getValue());
                         MainIdentifier mainIdentifier = new MainIdentifier(mainAux.getResource(), ai);
                         newSample.add(mainIdentifier);
                         for (Long pathwayId : node.getPathwayIds()) {
-                            Set<PathwayNode> pNodes = hierarchies.getPathwayLocation().getElements(pathwayId);
-                            if (pNodes == null) continue;
-                            for (PathwayNode pNode : pNodes) {
-                                Set<AnalysisReaction> reactions = node.getReactions(pathwayId);
-                                pNode.process(otherIdentifier, mainIdentifier, reactions);
-                            }
+                            hierarchies.process(pathwayId, otherIdentifier, mainIdentifier, node.getReactions(pathwayId));
                         }
                     }
                 }
             }
 
             if (includeInteractors) {
-                MapSet<Resource, InteractorNode> interactors = interactorsMap.get(identifier);
+                MapSet<Resource, InteractorNode> interactors = lookup.interactors;
                 for (Resource resource : interactors.keySet()) {
                     //Note: It goes only once
                     for (InteractorNode interactor : interactors.getElements(resource)) {
@@ -100,12 +136,9 @@ public class EnrichmentAnalysis {
                         for (Long pathwayId : pathwayReactions.keySet()) {
                             for (MainIdentifier mainIdentifier : interactor.getInteractsWith(pathwayId)) {
                                 found = true;
-                                newSample.add(new MainIdentifier(mainIdentifier.getResource(), interactor.getAccession(), identifier.getExp()));
+                                newSample.add(new MainIdentifier(mainIdentifier.getResource(), new AnalysisIdentifier(interactor.getAccession(), identifier)));
                                 Set<AnalysisReaction> reactions = pathwayReactions.getElements(pathwayId);
-                                Set<PathwayNode> pNodes = hierarchies.getPathwayLocation().getElements(pathwayId);
-                                for (PathwayNode pNode : pNodes) {
-                                    pNode.processInteractor(interactorIdentifier, mainIdentifier, reactions);
-                                }
+                                hierarchies.processInteractor(pathwayId, interactorIdentifier, mainIdentifier, reactions);
                             }
                         }
                     }
@@ -133,6 +166,26 @@ public class EnrichmentAnalysis {
 
     }
 
+    /**
+     * @return the entities (projected to the species when provided) and interactors for the identifier
+     */
+    private Lookup lookup(AnalysisIdentifier identifier, SpeciesNode speciesNode, boolean includeInteractors) {
+        MapSet<Resource, EntityNode> entities = analysisData.getEntitiesMap().get(identifier);
+        if (speciesNode != null) {
+            EntityNode[] projections = analysisData.getPhysicalEntityContainer().getProjections(speciesNode);
+            MapSet<Resource, EntityNode> projected = new MapSet<>();
+            for (Resource resource : entities.keySet()) {
+                for (EntityNode node : entities.getElements(resource)) {
+                    EntityNode projection = projections[node.getOrdinal()];
+                    if (projection != null) projected.add(resource, projection);
+                }
+            }
+            entities = projected;
+        }
+        MapSet<Resource, InteractorNode> interactors = includeInteractors ? analysisData.getInteractorsMap().get(identifier) : null;
+        return new Lookup(entities, interactors);
+    }
+
     private void decreaseCounter() {
         synchronized (ANALYSIS_SEMAPHORE) {
             if (--ANALYSIS_COUNT == 0) {
@@ -146,4 +199,14 @@ public class EnrichmentAnalysis {
             ++ANALYSIS_COUNT;
         }
     }
+
+    private static class Lookup {
+        final MapSet<Resource, EntityNode> entities;
+        final MapSet<Resource, InteractorNode> interactors;
+
+        Lookup(MapSet<Resource, EntityNode> entities, MapSet<Resource, InteractorNode> interactors) {
+            this.entities = entities;
+            this.interactors = interactors;
+        }
+    }
 }
@@ -64,6 +64,7 @@ public class IdentifiersMapping {
         long start = System.currentTimeMillis();
 
         IdentifiersMap<EntityNode> entitiesMap = analysisData.getEntitiesMap();
+        EntityNode[] projections = speciesNode != null ? analysisData.getPhysicalEntityContainer().getProjections(speciesNode) : null;
         for (String identifier : identifiers) {
             rtn.add(identifier, new HashSet<>());
 
@@ -71,7 +72,7 @@ public class IdentifiersMapping {
             for (Resource resource : resourceEntities.keySet()) {
                 for (EntityNode node : resourceEntities.getElements(resource)) {
                     if (!importableOnly || ExternalAnalysisResultCheck.isValidResource(node.getIdentifier().getResource().getName())) {
-                        if (speciesNode != null) node = node.getProjection(speciesNode);
+                        if (projections != null) node = projections[node.getOrdinal()];
                         if (node != null) rtn.add(identifier, new MappedIdentifier(node.getIdentifier()));
                     }
                 }
@@ -3,14 +3,20 @@ package org.reactome.server.analysis.core.methods;
 import org.reactome.server.analysis.core.data.AnalysisData;
 import org.reactome.server.analysis.core.exception.SpeciesNotFoundException;
 import org.reactome.server.analysis.core.model.*;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.exception.ResourceGoneException;
+import org.reactome.server.analysis.core.result.exception.ResourceNotFoundException;
+import org.reactome.server.analysis.core.result.model.AnalysisSummary;
+import org.reactome.server.analysis.core.result.utils.TokenUtils;
+import org.reactome.server.analysis.core.result.utils.Tokenizer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -24,17 +30,68 @@ public class SpeciesComparison {
     private final AnalysisData analysisData;
     private final EnrichmentAnalysis enrichmentAnalysis;
 
+    private ExecutorService precomputer;
+
     @Autowired
     public SpeciesComparison(AnalysisData analysisData, EnrichmentAnalysis enrichmentAnalysis) {
         this.analysisData = analysisData;
         this.enrichmentAnalysis = enrichmentAnalysis;
     }
 
+    /**
+     * PLEASE NOTE: The comparison is computed every time (use speciesComparison(speciesFrom, speciesTo, tokenUtils)
+     * to get the one already stored for the current data release)
+     */
     public HierarchiesData speciesComparison(SpeciesNode speciesFrom, SpeciesNode speciesTo) throws SpeciesNotFoundException {
         UserData ud = getSyntheticUserData(speciesFrom);
         return enrichmentAnalysis.overRepresentation(ud.getIdentifiers(), speciesTo, false);
     }
 
+    /**
+     * Looks up the comparison stored for the current data release (see TokenUtils.getFakedMD5(speciesFrom, speciesTo,
+     * databaseInfo)) and only computes and stores it when it is not found (never stored, expired or deleted)
+     *
+     * @return the stored result of the comparison of both species
+     */
+    public AnalysisStoredResult speciesComparison(SpeciesNode speciesFrom, SpeciesNode speciesTo, TokenUtils tokenUtils) throws SpeciesNotFoundException {
+        String md5 = tokenUtils.getFakedMD5(speciesFrom, speciesTo, analysisData.getDatabaseInfo());
+        if (Tokenizer.hasToken(md5, false, false)) {
+            String token = Tokenizer.getOrCreateToken(md5, false, false);
+            try {
+                return tokenUtils.getFromToken(token);
+            } catch (ResourceGoneException | ResourceNotFoundException e) {
+                logger.info(String.format("Species comparison %s - %s is not stored anymore and it is computed again", speciesFrom.getName(), speciesTo.getName()));
+                Tokenizer.removeAssociatedName(Tokenizer.getName(token));
+            }
+        }
+        return store(speciesFrom, speciesTo, tokenUtils);
+    }
+
+    /**
+     * Performs in the background the comparisons of speciesFrom with each of the species in speciesTo and stores
+     * their results, so the tokens (see TokenUtils.getFakedMD5(speciesFrom, speciesTo, databaseInfo)) are already
+     * available when requested. Comparisons already stored for the current data release are skipped.
+     */
+    public synchronized void precompute(SpeciesNode speciesFrom, Collection<SpeciesNode> speciesTo, TokenUtils tokenUtils) {
+        if (precomputer == null) {
+            precomputer = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "species-comparison");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (SpeciesNode species : speciesTo) {
+            if (species.equals(speciesFrom)) continue;
+            precomputer.submit(() -> {
+                try {
+                    speciesComparison(speciesFrom, species, tokenUtils);
+                } catch (SpeciesNotFoundException | RuntimeException e) {
+                    logger.warn(String.format("Species comparison %s - %s could not be precomputed: %s", speciesFrom.getName(), species.getName(), e.getMessage()));
+                }
+            });
+        }
+    }
+
     public UserData getSyntheticUserData(SpeciesNode species) throws SpeciesNotFoundException {
         EntitiesContainer graph = analysisData.getPhysicalEntityContainer();
 
@@ -43,11 +100,9 @@ public class SpeciesComparison {
         }
 
         Set<AnalysisIdentifier> speciesToIdentifiers = new HashSet<>();
-        for (EntityNode node : graph.getAllNodes()) {
-            if(species.equals(node.getSpecies())){
-                if(node.getIdentifier()!=null){
-                    speciesToIdentifiers.add(node.getIdentifier().getValue());
-                }
+        for (EntityNode node : graph.getNodes(species)) {
+            if(node.getIdentifier()!=null){
+                speciesToIdentifiers.add(node.getIdentifier().getValue());
             }
         }
         return new UserData(new LinkedList<>(), speciesToIdentifiers, null);
@@ -57,15 +112,27 @@ public class SpeciesComparison {
     public UserData getSyntheticUserData(SpeciesNode speciesFrom, SpeciesNode speciesTo){
         EntitiesContainer graph = analysisData.getPhysicalEntityContainer();
 
+        EntityNode[] projections = graph.getProjections(speciesTo);
         Set<AnalysisIdentifier> speciesToIdentifiers = new HashSet<>();
-        for (EntityNode node : graph.getAllNodes()) {
-            if(speciesFrom.equals(node.getSpecies())){
-                EntityNode eq = node.getProjection(speciesTo);
-                if(eq!=null && node.getIdentifier()!=null){
-                    speciesToIdentifiers.add(node.getIdentifier().getValue());
-                }
+        for (EntityNode node : graph.getNodes(speciesFrom)) {
+            EntityNode eq = projections[node.getOrdinal()];
+            if(eq!=null && node.getIdentifier()!=null){
+                speciesToIdentifiers.add(node.getIdentifier().getValue());
             }
         }
         return new UserData(new LinkedList<>(), speciesToIdentifiers, null);
     }
+
+    private AnalysisStoredResult store(SpeciesNode speciesFrom, SpeciesNode speciesTo, TokenUtils tokenUtils) throws SpeciesNotFoundException {
+        String md5 = tokenUtils.getFakedMD5(speciesFrom, speciesTo, analysisData.getDatabaseInfo());
+        UserData ud = getSyntheticUserData(speciesFrom);
+        HierarchiesData hierarchiesData = enrichmentAnalysis.overRepresentation(ud.getIdentifiers(), speciesTo, false);
+        AnalysisStoredResult result = new AnalysisStoredResult(ud, hierarchiesData);
+        result.setHitPathways(hierarchiesData.getUniqueHitPathways(speciesTo));
+        String token = Tokenizer.getOrCreateToken(md5, false, false);
+        String sampleName = speciesFrom.getName() + " - " + speciesTo.getName();
+        result.setSummary(new AnalysisSummary(token, false, false, sampleName, AnalysisType.SPECIES_COMPARISON, speciesTo.getSpeciesID(), null, true));
+        tokenUtils.saveResult(result);
+        return result;
+    }
 }
@@ -2,49 +2,131 @@ package org.reactome.server.analysis.core.model;
 
 import org.reactome.server.analysis.core.result.external.ExternalIdentifier;
 
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
+ * The expression values are not kept in the identifier but in the row of a shared ExpressionMatrix,
+ * so copying an identifier does not copy its expression values
+ *
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  */
 public class AnalysisIdentifier implements Comparable<AnalysisIdentifier> {
 
     private String id;
-    private List<Double> exp;
+    private ExpressionMatrix matrix;
+    private int row;
 
     public AnalysisIdentifier(AnalysisIdentifier aux){
-        this(aux.getId());
-        for (Double ev : aux.getExp()) {
-            this.add(ev);
-        }
+        this(aux.getId(), aux);
+    }
+
+    /**
+     * Creates a new identifier sharing the expression values of aux
+     */
+    public AnalysisIdentifier(String id, AnalysisIdentifier aux) {
+        this(id, aux.matrix, aux.row);
     }
 
     public AnalysisIdentifier(String id) {
+        this(id, null, -1);
+    }
+
+    public AnalysisIdentifier(String id, ExpressionMatrix matrix, int row) {
         this.id = id;
-        this.exp = new LinkedList<>();
+        this.matrix = matrix;
+        this.row = matrix == null ? -1 : row;
+    }
+
+    public AnalysisIdentifier(String id, double[] exp) {
+        this(id, exp == null || exp.length == 0 ? null : ExpressionMatrix.singleRow(exp), 0);
     }
 
     public AnalysisIdentifier(String id, List<Double> exp) {
-        this.id = id;
-        this.exp = exp;
+        this(id, toArray(exp));
     }
 
     public AnalysisIdentifier(ExternalIdentifier identifier){
-        this.id = identifier.getId();
-        this.exp = identifier.getExp();
+        this(identifier.getId(), identifier.getExp());
     }
 
+    /**
+     * PLEASE NOTE: The identifier stops sharing its expression values after adding a new one
+     *
+     * @deprecated every call copies all the expression values of the identifier, so adding them one by one takes
+     * quadratic time (use the AnalysisIdentifier(id, double[]) or AnalysisIdentifier(id, List) constructors instead)
+     */
+    @Deprecated
     public boolean add(Double value){
-        return this.exp.add(value);
+        double[] exp = new double[getExpSize() + 1];
+        for (int i = 0; i < exp.length - 1; i++) {
+            exp[i] = matrix.get(row, i);
+        }
+        exp[exp.length - 1] = value == null ? Double.NaN : value;
+        this.matrix = ExpressionMatrix.singleRow(exp);
+        this.row = 0;
+        return true;
     }
 
     public String getId() {
         return id;
     }
 
+    /**
+     * Returns a read only view of the expression values where the missing ones are null
+     *
+     * @return a read only view of the expression values where the missing ones are null
+     */
     public List<Double> getExp() {
-        return exp;
+        return new ExpressionList();
+    }
+
+    /**
+     * Returns a copy of the expression values where the missing ones are Double.NaN
+     *
+     * @return a copy of the expression values where the missing ones are Double.NaN
+     */
+    public double[] getExpValues() {
+        return matrix == null ? new double[0] : matrix.getRow(row);
+    }
+
+    public int getExpSize() {
+        return matrix == null ? 0 : matrix.getColumns();
+    }
+
+    /**
+     * @return the expression value for the column or Double.NaN when missing
+     */
+    public double getExpValue(int column) {
+        return matrix.get(row, column);
+    }
+
+    /**
+     * Adds the expression values to sum and increases total for each of the non-missing ones
+     */
+    void accumulateExp(double[] sum, int[] total) {
+        if (matrix != null) matrix.accumulate(row, sum, total);
+    }
+
+    /**
+     * Used by ExpressionMatrix.Compaction (subclasses keep their own fields in the copy)
+     *
+     * @return a copy keeping its expression values in the matrices of the compaction
+     */
+    protected AnalysisIdentifier copy(ExpressionMatrix.Compaction compaction) {
+        if (matrix == null) return new AnalysisIdentifier(id);
+        return new AnalysisIdentifier(id, compaction.getMatrix(matrix), compaction.getRow(matrix, row));
+    }
+
+    private static double[] toArray(List<Double> exp) {
+        if (exp == null || exp.isEmpty()) return null;
+        double[] rtn = new double[exp.size()];
+        int i = 0;
+        for (Double ev : exp) {
+            rtn[i++] = ev == null ? Double.NaN : ev;
+        }
+        return rtn;
     }
 
     @Override
@@ -74,4 +156,19 @@ public class AnalysisIdentifier implements Comparable<AnalysisIdentifier> {
     public int compareTo(AnalysisIdentifier o) {
         return this.id.compareTo(o.id);
     }
-}
\ No newline at end of file
+
+    private class ExpressionList extends AbstractList<Double> implements RandomAccess {
+
+        @Override
+        public Double get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            double ev = matrix.get(row, index);
+            return Double.isNaN(ev) ? null : ev;
+        }
+
+        @Override
+        public int size() {
+            return getExpSize();
+        }
+    }
+}
@@ -38,9 +38,13 @@ public class DataContainer implements Serializable {
     //A double link graph with the representation of the physical entities
     EntitiesContainer entitiesContainer;
 
+    //The flattened ancestors of each pathway (shared by all the clones of the hierarchies)
+    HierarchyIndex hierarchyIndex;
+
     public DataContainer(DatabaseInfo databaseInfo,
                          Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies,
                          MapSet<Long, PathwayNode> pathwayLocation,
+                         HierarchyIndex hierarchyIndex,
                          EntitiesContainer entitiesContainer,
                          IdentifiersMap<EntityNode> entitiesMap,
                          IdentifiersMap<InteractorNode> interactorsMap) {
@@ -48,6 +52,7 @@ public class DataContainer implements Serializable {
         this.pathwayHierarchies = pathwayHierarchies;
         this.entitiesContainer = entitiesContainer;
         this.pathwayLocation = pathwayLocation;
+        this.hierarchyIndex = hierarchyIndex;
         this.entitiesMap = entitiesMap;
         this.interactorsMap = interactorsMap;
     }
@@ -64,7 +69,10 @@ public class DataContainer implements Serializable {
     public HierarchiesData getHierarchiesData() {
         //The object is not kept by itself because it requires more disk space
         HierarchiesData data = new HierarchiesData(this.pathwayHierarchies, this.pathwayLocation);
-        return AnalysisDataUtils.kryoCopy(data);
+        HierarchiesData rtn = AnalysisDataUtils.kryoCopy(data);
+        //The index is not cloned because it is read-only (the nodes of the clone keep their ordinals)
+        rtn.setHierarchyIndex(this.hierarchyIndex);
+        return rtn;
     }
 
     public EntitiesContainer getEntitiesContainer() {
@@ -81,6 +89,7 @@ public class DataContainer implements Serializable {
 
     public void initialize() {
         this.entitiesContainer.setOrthologiesCrossLinks();
+        this.entitiesContainer.initialize();
     }
 
 }
\ No newline at end of file
@@ -3,7 +3,8 @@ package org.reactome.server.analysis.core.model;
 import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
 import org.reactome.server.analysis.core.util.MapSet;
 
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -12,6 +13,12 @@ public class EntitiesContainer {
 
     private MapSet<MainIdentifier, EntityNode> nodes;
 
+    //The nodes by ordinal and by species (built when the data is loaded, see initialize)
+    private transient EntityNode[] ordered;
+    private transient Map<SpeciesNode, List<EntityNode>> speciesNodes;
+    //The projection of every node (by ordinal) to each species (built the first time each species is requested)
+    private transient Map<SpeciesNode, EntityNode[]> projections;
+
     public EntitiesContainer() {
         this.nodes = new MapSet<>();
     }
@@ -35,10 +42,60 @@ public class EntitiesContainer {
         return nodes.values();
     }
 
+    /**
+     * Iterates over all the nodes without copying them (every node is kept only once by its identifier)
+     */
+    public Iterable<EntityNode> nodes() {
+        return nodes.elements();
+    }
+
+    /**
+     * @return the nodes of the species (the ones without species, as small molecules, are not included)
+     */
+    public List<EntityNode> getNodes(SpeciesNode species) {
+        return speciesNodes.getOrDefault(species, Collections.emptyList());
+    }
+
+    /**
+     * Returns the projection of every node to the species (see EntityNode.getProjection) indexed by the
+     * node ordinal, so projecting an entity is an array access instead of looking it up in the orthologies
+     * maps. The array is created the first time the species is requested and it is shared, so it must not
+     * be modified.
+     *
+     * @return the projection (or null when there is none) of every node to the species by the node ordinal
+     */
+    public EntityNode[] getProjections(SpeciesNode species) {
+        return projections.computeIfAbsent(species, s -> {
+            EntityNode[] rtn = new EntityNode[ordered.length];
+            for (int i = 0; i < ordered.length; i++) {
+                rtn[i] = ordered[i].getProjection(s);
+            }
+            return rtn;
+        });
+    }
+
     public void setOrthologiesCrossLinks(){
-        for (EntityNode node : getAllNodes()) {
+        for (EntityNode node : nodes()) {
             node.setOrthologiesCrossLinks();
         }
     }
 
+    /**
+     * Sets the ordinal of the nodes and groups them by species. It has to be called once the orthologies
+     * cross links are set, since the projections depend on them.
+     */
+    void initialize() {
+        this.ordered = new EntityNode[nodes.elementsCount()];
+        this.speciesNodes = new HashMap<>();
+        this.projections = new ConcurrentHashMap<>();
+        int ordinal = 0;
+        for (EntityNode node : nodes()) {
+            node.setOrdinal(ordinal);
+            this.ordered[ordinal++] = node;
+            if (node.getSpecies() != null) {
+                this.speciesNodes.computeIfAbsent(node.getSpecies(), s -> new ArrayList<>()).add(node);
+            }
+        }
+    }
+
 }
@@ -24,6 +24,9 @@ public class EntityNode {
     //links between both structures easy through the pathway location map
     private MapSet<Long, AnalysisReaction> pathwayReactions = null;
 
+    //Position of the node in the EntitiesContainer (set when the data is loaded)
+    private transient int ordinal = -1;
+
     public EntityNode(SpeciesNode species, MainResource mainResource, String mainIdentifier, List<Modification> modifications) {
         this.species = species;
         this.identifier = new MainIdentifier(mainResource, new AnalysisIdentifier(mainIdentifier));
@@ -75,6 +78,17 @@ public class EntityNode {
         return rtn;
     }
 
+    /**
+     * @return the position of the node in the projections of EntitiesContainer
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     public MainIdentifier getIdentifier() {
         return identifier;
     }
@@ -93,27 +107,31 @@ public class EntityNode {
         return inferredTo;
     }
 
+    /**
+     * @return a read-only view of the reactions of the node in the pathway
+     */
     public Set<AnalysisReaction> getReactions(Long pathwayId) {
-        Set<AnalysisReaction> rtn = new HashSet<>();
         if (this.pathwayReactions != null) {
             Set<AnalysisReaction> reactions = this.pathwayReactions.getElements(pathwayId);
             if (reactions != null) {
-                rtn.addAll(reactions);
+                return Collections.unmodifiableSet(reactions);
             }
         }
-        return rtn;
+        return Collections.emptySet();
     }
 
     public SpeciesNode getSpecies() {
         return species;
     }
 
+    /**
+     * @return a read-only view of the pathways containing the node
+     */
     public Set<Long> getPathwayIds() {
-        Set<Long> rtn = new HashSet<>();
         if (this.pathwayReactions != null) {
-            rtn.addAll(this.pathwayReactions.keySet());
+            return Collections.unmodifiableSet(this.pathwayReactions.keySet());
         }
-        return rtn;
+        return Collections.emptySet();
     }
 
     public MapSet<Long, AnalysisReaction> getPathwayReactions() {
@@ -10,21 +10,20 @@ public class ExpressionBoundaries {
     Double max;
 
     public ExpressionBoundaries(Set<AnalysisIdentifier> identifiers){
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
         for (AnalysisIdentifier identifier : identifiers) {
-            for (Double exp : identifier.getExp()) {
-                if( exp == null ) continue;
-                if( min == null && max == null ){
-                    min = exp;
-                    max = exp;
-                    continue;
-                }
-                if( exp < min ){
-                    min = exp;
-                }else if( exp > max ){
-                    max = exp;
-                }
+            for (int i = 0; i < identifier.getExpSize(); i++) {
+                double exp = identifier.getExpValue(i);
+                if( Double.isNaN(exp) ) continue;
+                if( exp < min ) min = exp;
+                if( exp > max ) max = exp;
             }
         }
+        if( min <= max ){
+            this.min = min;
+            this.max = max;
+        }
     }
 
     public Double getMin() {
@@ -0,0 +1,163 @@
+package org.reactome.server.analysis.core.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the expression values submitted by the user once for the whole analysis. Values are stored
+ * per column and every AnalysisIdentifier refers to its row, so copies of the identifiers created
+ * during the analysis do not copy the expression values. Double.NaN stands for a missing value.
+ * <p>
+ * PLEASE NOTE: The matrix is only modified while parsing, afterwards it is used read only
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class ExpressionMatrix {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[][] columns;
+    private int rows = 0;
+
+    public ExpressionMatrix(int columns) {
+        this.columns = new double[columns][INITIAL_CAPACITY];
+    }
+
+    static ExpressionMatrix singleRow(double[] values) {
+        ExpressionMatrix rtn = new ExpressionMatrix(values.length);
+        for (int i = 0; i < values.length; i++) {
+            rtn.columns[i] = new double[]{values[i]};
+        }
+        rtn.rows = 1;
+        return rtn;
+    }
+
+    /**
+     * Appends a new row with all its values missing
+     *
+     * @return the index of the new row
+     */
+    public int addRow() {
+        for (int i = 0; i < columns.length; i++) {
+            if (rows == columns[i].length) {
+                columns[i] = Arrays.copyOf(columns[i], Math.max(INITIAL_CAPACITY, rows * 2));
+            }
+            columns[i][rows] = Double.NaN;
+        }
+        return rows++;
+    }
+
+    /**
+     * Appends a new row with the values of the row of other (both matrices have the same columns)
+     *
+     * @return the index of the new row
+     */
+    public int addRow(ExpressionMatrix other, int row) {
+        int rtn = addRow();
+        for (int i = 0; i < columns.length; i++) {
+            columns[i][rtn] = other.columns[i][row];
+        }
+        return rtn;
+    }
+
+    /**
+     * Removes the last added row (used when the row turns to be invalid or duplicated while parsing)
+     */
+    public void removeLastRow() {
+        if (rows > 0) rows--;
+    }
+
+    public void set(int row, int column, double value) {
+        columns[column][row] = value;
+    }
+
+    public double get(int row, int column) {
+        return columns[column][row];
+    }
+
+    public int getColumns() {
+        return columns.length;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public double[] getRow(int row) {
+        double[] rtn = new double[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            rtn[i] = columns[i][row];
+        }
+        return rtn;
+    }
+
+    /**
+     * Adds the values of the row to sum and increases total for each of the non-missing ones
+     */
+    void accumulate(int row, double[] sum, int[] total) {
+        for (int i = 0; i < columns.length; i++) {
+            double ev = columns[i][row];
+            if (!Double.isNaN(ev)) {
+                sum[i] += ev;
+                total[i]++;
+            }
+        }
+    }
+
+    /**
+     * Releases the spare capacity once the matrix is not going to grow anymore
+     */
+    public void trim() {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].length > rows) {
+                columns[i] = Arrays.copyOf(columns[i], rows);
+            }
+        }
+    }
+
+    /**
+     * Copies identifiers keeping only the rows they use (each one once) in new matrices, so the copies do not hold
+     * the whole matrix submitted by the user (e.g. the not found identifiers of a stored result)
+     * <p>
+     * PLEASE NOTE: A compaction is meant to be used by one thread and discarded afterwards
+     */
+    public static class Compaction {
+        //Identifiers that do not come from the same input might have a different number of values
+        private final Map<Integer, ExpressionMatrix> matrices = new HashMap<>();
+        private final Map<ExpressionMatrix, Map<Integer, Integer>> rows = new IdentityHashMap<>();
+        private final Map<AnalysisIdentifier, AnalysisIdentifier> copies = new IdentityHashMap<>();
+
+        /**
+         * @return the copy of the identifier (the same one for the same identifier)
+         */
+        public AnalysisIdentifier copy(AnalysisIdentifier identifier) {
+            AnalysisIdentifier rtn = copies.get(identifier);
+            if (rtn == null) {
+                rtn = identifier.copy(this);
+                copies.put(identifier, rtn);
+            }
+            return rtn;
+        }
+
+        /**
+         * Releases the spare capacity of the new matrices once all the identifiers have been copied
+         */
+        public void trim() {
+            matrices.values().forEach(ExpressionMatrix::trim);
+        }
+
+        ExpressionMatrix getMatrix(ExpressionMatrix matrix) {
+            return matrices.computeIfAbsent(matrix.getColumns(), ExpressionMatrix::new);
+        }
+
+        /**
+         * @return the position in getMatrix(matrix) of the copy of the row
+         */
+        int getRow(ExpressionMatrix matrix, int row) {
+            return rows.computeIfAbsent(matrix, m -> new HashMap<>())
+                    .computeIfAbsent(row, r -> getMatrix(matrix).addRow(matrix, r));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.reactome.server.analysis.core.model;
 
+import org.reactome.server.analysis.core.model.identifier.Identifier;
+import org.reactome.server.analysis.core.model.identifier.InteractorIdentifier;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
 import org.reactome.server.analysis.core.model.resource.MainResource;
 import org.reactome.server.analysis.core.util.MapSet;
 
@@ -14,6 +17,12 @@ public class HierarchiesData {
     //A map between pathways identifier and their locations in the pathway hierarchy
     private MapSet<Long, PathwayNode> pathwayLocation;
 
+    //Shared by every clone of the hierarchies, so it is set once they have been cloned (see DataContainer)
+    private transient HierarchyIndex hierarchyIndex;
+    //The nodes and species hierarchies of this clone by ordinal (see HierarchyIndex)
+    private transient PathwayNode[] nodes;
+    private transient PathwayHierarchy[] hierarchies;
+
     Set<AnalysisIdentifier> notFound = new HashSet<>();
 
     public HierarchiesData(Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies, MapSet<Long, PathwayNode> pathwayLocation) {
@@ -21,6 +30,76 @@ public class HierarchiesData {
         this.pathwayLocation = pathwayLocation;
     }
 
+    public HierarchiesData(Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies, MapSet<Long, PathwayNode> pathwayLocation, HierarchyIndex hierarchyIndex) {
+        this(pathwayHierarchies, pathwayLocation);
+        this.setHierarchyIndex(hierarchyIndex);
+    }
+
+    void setHierarchyIndex(HierarchyIndex hierarchyIndex) {
+        this.hierarchyIndex = hierarchyIndex;
+        this.nodes = null;
+        this.hierarchies = null;
+    }
+
+    /**
+     * Adds the hit to every location of the pathway and all their ancestors
+     */
+    public void process(Long pathwayId, Identifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions) {
+        if (hierarchyIndex == null) {
+            Set<PathwayNode> pNodes = pathwayLocation.getElements(pathwayId);
+            if (pNodes == null) return;
+            for (PathwayNode pNode : pNodes) {
+                pNode.process(identifier, mainIdentifier, reactions);
+            }
+            return;
+        }
+        int[] ancestors = hierarchyIndex.getAncestors(pathwayId);
+        if (ancestors == null) return;
+        PathwayNode[] nodes = getNodes();
+        for (int ordinal : ancestors) {
+            nodes[ordinal].addEntity(identifier, mainIdentifier, reactions);
+        }
+        PathwayHierarchy[] hierarchies = getHierarchies();
+        for (int ordinal : hierarchyIndex.getHierarchies(pathwayId)) {
+            hierarchies[ordinal].process(identifier, mainIdentifier, reactions);
+        }
+    }
+
+    /**
+     * Adds the interactor hit to every location of the pathway and all their ancestors (only when there are reactions)
+     */
+    public void processInteractor(Long pathwayId, InteractorIdentifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions) {
+        if (reactions == null || reactions.isEmpty()) return;
+        if (hierarchyIndex == null) {
+            Set<PathwayNode> pNodes = pathwayLocation.getElements(pathwayId);
+            if (pNodes == null) return;
+            for (PathwayNode pNode : pNodes) {
+                pNode.processInteractor(identifier, mainIdentifier, reactions);
+            }
+            return;
+        }
+        int[] ancestors = hierarchyIndex.getAncestors(pathwayId);
+        if (ancestors == null) return;
+        PathwayNode[] nodes = getNodes();
+        for (int ordinal : ancestors) {
+            nodes[ordinal].addInteractor(identifier, mainIdentifier, reactions);
+        }
+        PathwayHierarchy[] hierarchies = getHierarchies();
+        for (int ordinal : hierarchyIndex.getHierarchies(pathwayId)) {
+            hierarchies[ordinal].processInteractor(identifier, mainIdentifier, reactions);
+        }
+    }
+
+    private PathwayNode[] getNodes() {
+        if (nodes == null) nodes = hierarchyIndex.getNodes(pathwayLocation);
+        return nodes;
+    }
+
+    private PathwayHierarchy[] getHierarchies() {
+        if (hierarchies == null) hierarchies = hierarchyIndex.getHierarchies(pathwayHierarchies);
+        return hierarchies;
+    }
+
     public void addNotFound(AnalysisIdentifier identifier) {
         this.notFound.add(identifier);
     }
@@ -0,0 +1,100 @@
+package org.reactome.server.analysis.core.model;
+
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Read-only index of the pathway hierarchies, built once when the intermediate data structure is created and shared
+ * by all the analysis. For each pathway identifier it keeps the flattened list of the nodes a hit has to be added to
+ * (every location of the pathway and their ancestors, each one only once) and the species hierarchies they belong to,
+ * so the propagation of a hit is a single pass over the list instead of a recursive walk up through the parents of
+ * every location.
+ * <p>
+ * PLEASE NOTE: The nodes are referred by their ordinal (kept in the nodes themselves), so the same index can be used
+ * for every clone of the hierarchies (see HierarchiesData)
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class HierarchyIndex implements Serializable {
+
+    private static final int[] EMPTY = new int[0];
+
+    private Map<Long, int[]> ancestors = new HashMap<>();
+    private Map<Long, int[]> hierarchies = new HashMap<>();
+
+    private int nodes = 0;
+    private int species = 0;
+
+    public HierarchyIndex(Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies, MapSet<Long, PathwayNode> pathwayLocation) {
+        for (PathwayHierarchy hierarchy : pathwayHierarchies.values()) {
+            hierarchy.setOrdinal(species++);
+        }
+        for (Long pathwayId : pathwayLocation.keySet()) {
+            for (PathwayNode node : pathwayLocation.getElements(pathwayId)) {
+                node.setOrdinal(nodes++);
+            }
+        }
+
+        for (Long pathwayId : pathwayLocation.keySet()) {
+            Set<Integer> nodeOrdinals = new LinkedHashSet<>();
+            Set<Integer> speciesOrdinals = new LinkedHashSet<>();
+            for (PathwayNode location : pathwayLocation.getElements(pathwayId)) {
+                //Once a node is in the list, all its ancestors are there too
+                for (PathwayNode node = location; node != null && nodeOrdinals.add(node.getOrdinal()); node = node.getParent()) {
+                    if (node instanceof PathwayRoot) {
+                        speciesOrdinals.add(((PathwayRoot) node).getPathwayHierarchy().getOrdinal());
+                    }
+                }
+            }
+            this.ancestors.put(pathwayId, toArray(nodeOrdinals));
+            this.hierarchies.put(pathwayId, toArray(speciesOrdinals));
+        }
+    }
+
+    /**
+     * @return the ordinals of the locations of the pathway and all their ancestors (null if the pathway is not in the hierarchies)
+     */
+    public int[] getAncestors(Long pathwayId) {
+        return ancestors.get(pathwayId);
+    }
+
+    /**
+     * @return the ordinals of the species hierarchies containing the pathway
+     */
+    public int[] getHierarchies(Long pathwayId) {
+        return hierarchies.getOrDefault(pathwayId, EMPTY);
+    }
+
+    /**
+     * @return the nodes of the hierarchy (it can be a clone of the one used to build the index) by ordinal
+     */
+    public PathwayNode[] getNodes(MapSet<Long, PathwayNode> pathwayLocation) {
+        PathwayNode[] rtn = new PathwayNode[nodes];
+        for (Long pathwayId : pathwayLocation.keySet()) {
+            for (PathwayNode node : pathwayLocation.getElements(pathwayId)) {
+                rtn[node.getOrdinal()] = node;
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * @return the species hierarchies (they can be a clone of the ones used to build the index) by ordinal
+     */
+    public PathwayHierarchy[] getHierarchies(Map<SpeciesNode, PathwayHierarchy> pathwayHierarchies) {
+        PathwayHierarchy[] rtn = new PathwayHierarchy[species];
+        for (PathwayHierarchy hierarchy : pathwayHierarchies.values()) {
+            rtn[hierarchy.getOrdinal()] = hierarchy;
+        }
+        return rtn;
+    }
+
+    private static int[] toArray(Set<Integer> set) {
+        int[] rtn = new int[set.size()];
+        int i = 0;
+        for (Integer ordinal : set) rtn[i++] = ordinal;
+        return rtn;
+    }
+}
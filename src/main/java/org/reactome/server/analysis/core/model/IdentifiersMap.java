@@ -74,8 +74,8 @@ public class IdentifiersMap<T> implements Serializable {
 
     public Set<T> values() {
         Set<T> rtn = new HashSet<>();
-        for (String s : keySet()) {
-            rtn.addAll(get(s).values());
+        for (MapSet<Resource, T> map : this.tree.getValuesForKeysStartingWith("")) {
+            for (T t : map.elements()) rtn.add(t);
         }
         return rtn;
     }
@@ -92,7 +92,7 @@ public class IdentifiersMap<T> implements Serializable {
             for (CharSequence sequence : this.tree.getKeysStartingWith(id + "-")) {
 //                String aux = sequence.toString();
 //                if(aux.matches(UNIPROT_POLIMORFISM)){
-                rtn.add(new AnalysisIdentifier(sequence.toString(), identifier.getExp()));
+                rtn.add(new AnalysisIdentifier(sequence.toString(), identifier));
 //                }
             }
         }
@@ -3,6 +3,7 @@ package org.reactome.server.analysis.core.model;
 import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
 import org.reactome.server.analysis.core.util.MapSet;
 
+import java.util.Collections;
 import java.util.Set;
 
 /**
@@ -16,6 +17,8 @@ public class InteractorNode {
     private String accession;
 
     private MapSet<Long, MainIdentifier> interactsWith;
+    //All the interactsWith (no matter the pathway) kept once they are requested, since they do not change after loading
+    private transient volatile Set<MainIdentifier> allInteractsWith;
 
     //We DO NOT use PathwayNode here because at some point cloning the hierarchies
     //structure will be needed and keeping this separate will help to maintain the
@@ -29,14 +32,22 @@ public class InteractorNode {
 
     public void addInteractsWith(Long pathway, MainIdentifier interactsWith) {
         this.interactsWith.add(pathway, interactsWith);
+        this.allInteractsWith = null;
     }
 
     public String getAccession() {
         return accession;
     }
 
+    /**
+     * @return a read-only set with the identifiers the interactor interacts with in any pathway
+     */
     public Set<MainIdentifier> getInteractsWith() {
-        return interactsWith.values();
+        Set<MainIdentifier> rtn = allInteractsWith;
+        if (rtn == null) {
+            allInteractsWith = rtn = Collections.unmodifiableSet(interactsWith.values());
+        }
+        return rtn;
     }
 
     public Set<MainIdentifier> getInteractsWith(Long pathway) {
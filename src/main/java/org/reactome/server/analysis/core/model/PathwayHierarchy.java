@@ -18,6 +18,9 @@ public class PathwayHierarchy implements Serializable {
 
     private PathwayNodeData data;
 
+    //Position of the hierarchy in the HierarchyIndex
+    private int ordinal = -1;
+
     public PathwayHierarchy(SpeciesNode species) {
         this.species = species;
         this.children = new HashSet<>();
@@ -42,6 +45,14 @@ public class PathwayHierarchy implements Serializable {
         return species;
     }
 
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     protected Set<PathwayNode> getHitPathways(){
         Set<PathwayNode> rtn = new HashSet<>();
         for (PathwayNode node : this.children) {
@@ -27,6 +27,9 @@ public class PathwayNode implements Serializable, Comparable<PathwayNode> {
 
     private PathwayNodeData data;
 
+    //Position of the node in the HierarchyIndex
+    private int ordinal = -1;
+
     public PathwayNode(String stId, Long pathwayId, String name, boolean hasDiagram, boolean inDisease) {
         this(null, stId, pathwayId, name, hasDiagram, inDisease);
     }
@@ -133,8 +136,7 @@ public class PathwayNode implements Serializable, Comparable<PathwayNode> {
     }
 
     public void process(Identifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions){
-        this.data.addEntity(identifier, mainIdentifier);
-        this.data.addReactions(mainIdentifier.getResource(), reactions);
+        this.addEntity(identifier, mainIdentifier, reactions);
         if(this.parent!=null){
             this.parent.process(identifier, mainIdentifier, reactions);
         }
@@ -142,14 +144,33 @@ public class PathwayNode implements Serializable, Comparable<PathwayNode> {
 
     public void processInteractor(InteractorIdentifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions){
         if(reactions!=null && !reactions.isEmpty()) {
-            data.addInteractors(mainIdentifier, identifier);
-            data.addReactions(mainIdentifier.getResource(), reactions);
+            addInteractor(identifier, mainIdentifier, reactions);
             if (parent != null) {
                 parent.processInteractor(identifier, mainIdentifier, reactions);
             }
         }
     }
 
+    //Only this node (the propagation to the ancestors is done by the caller)
+    void addEntity(Identifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions){
+        this.data.addEntity(identifier, mainIdentifier);
+        this.data.addReactions(mainIdentifier.getResource(), reactions);
+    }
+
+    //Only this node (the propagation to the ancestors is done by the caller)
+    void addInteractor(InteractorIdentifier identifier, MainIdentifier mainIdentifier, Set<AnalysisReaction> reactions){
+        this.data.addInteractors(mainIdentifier, identifier);
+        this.data.addReactions(mainIdentifier.getResource(), reactions);
+    }
+
+    int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     @SuppressWarnings("NullableProblems")
     @Override
     public int compareTo(PathwayNode o) {
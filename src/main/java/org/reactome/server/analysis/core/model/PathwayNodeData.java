@@ -10,8 +10,10 @@ import org.reactome.server.analysis.core.result.external.*;
 import org.reactome.server.analysis.core.util.MapSet;
 import org.reactome.server.analysis.core.util.MathUtilities;
 
+import java.lang.ref.SoftReference;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -31,45 +33,69 @@ public class PathwayNodeData {
         }
 
         Counter(ExternalStatistics counter) {
-            this.totalEntities = counter.getEntitiesCount();
-            this.foundEntities = counter.getEntitiesFound();
-            this.entitiesRatio = counter.getEntitiesRatio();
-            this.entitiesPValue = counter.getEntitiesPValue();
-            this.entitiesFDR = counter.getEntitiesFDR();
+            this.totalEntities = primitive(counter.getEntitiesCount());
+            this.foundEntities = primitive(counter.getEntitiesFound());
+            this.entitiesRatio = primitive(counter.getEntitiesRatio());
+            this.entitiesPValue = primitive(counter.getEntitiesPValue());
+            this.entitiesFDR = primitive(counter.getEntitiesFDR());
 
-            this.totalInteractors = counter.getInteractorsCount();
-            this.foundInteractors = counter.getInteractorsFound();
-            this.interactorsRatio = counter.getInteractorsRatio();
+            this.totalInteractors = primitive(counter.getInteractorsCount());
+            this.foundInteractors = primitive(counter.getInteractorsFound());
+            this.interactorsRatio = primitive(counter.getInteractorsRatio());
 
-            this.totalFound = counter.getEntitiesAndInteractorsCount();
+            this.totalFound = primitive(counter.getEntitiesAndInteractorsCount());
 
-            this.totalReactions = counter.getReactionsCount();
-            this.foundReactions = counter.getReactionsFound();
-            this.reactionsRatio = counter.getReactionsRatio();
+            this.totalReactions = primitive(counter.getReactionsCount());
+            this.foundReactions = primitive(counter.getReactionsFound());
+            this.reactionsRatio = primitive(counter.getReactionsRatio());
 
             //Only used for external results
-            this.exp = counter.getExp();
+            this.exp = primitive(counter.getExp());
         }
 
-        Integer totalEntities = 0; //Pre-calculated in setCounters method
-        Integer foundEntities = 0;
-        Double entitiesRatio;
-        Double entitiesPValue;
-        Double entitiesFDR;
+        //Creates a clone
+        Counter(Counter counter) {
+            this.totalEntities = counter.totalEntities;
+            this.foundEntities = counter.foundEntities;
+            this.entitiesRatio = counter.entitiesRatio;
+            this.entitiesPValue = counter.entitiesPValue;
+            this.entitiesFDR = counter.entitiesFDR;
 
-        Integer totalInteractors = 0; //Pre-calculated in setCounters method
-        Integer foundInteractors = 0;
-        Double interactorsRatio;
+            this.totalInteractors = counter.totalInteractors;
+            this.foundInteractors = counter.foundInteractors;
+            this.interactorsRatio = counter.interactorsRatio;
+
+            this.totalFound = counter.totalFound;
+            this.foundEntitiesAndInteractors = counter.foundEntitiesAndInteractors;
+
+            this.totalReactions = counter.totalReactions;
+            this.foundReactions = counter.foundReactions;
+            this.reactionsRatio = counter.reactionsRatio;
+
+            this.exp = counter.exp;
+        }
+
+        //Primitives keep the counters (one per resource for every pathway) small. NaN stands for not calculated (null)
+        int totalEntities = 0; //Pre-calculated in setCounters method
+        int foundEntities = 0;
+        double entitiesRatio = Double.NaN;
+        double entitiesPValue = Double.NaN;
+        double entitiesFDR = Double.NaN;
+
+        int totalInteractors = 0; //Pre-calculated in setCounters method
+        int foundInteractors = 0;
+        double interactorsRatio = Double.NaN;
 
         //Aggregation
-        Integer totalFound = 0;
+        int totalFound = 0;
+        int foundEntitiesAndInteractors = 0; //Only kept for statistics only data (see getStatistics)
 
         //TP-Based analysis
-        Integer totalReactions = 0; //Pre-calculated in setCounters method
-        Integer foundReactions = 0;
-        Double reactionsRatio;
+        int totalReactions = 0; //Pre-calculated in setCounters method
+        int foundReactions = 0;
+        double reactionsRatio = Double.NaN;
 
-        List<Double> exp;
+        double[] exp; //Missing values are NaN
     }
 
     private MapSet<MainResource, String> foundTotal = new MapSet<>();
@@ -100,6 +126,11 @@ public class PathwayNodeData {
     private Counter combinedResult = new Counter();  //All main identifiers combined in one result
     private Counter importableResult = new Counter();  //All importable identifiers combined in one result
 
+    //For statistics only data the found figures are taken from the counters and the details are loaded on demand
+    private boolean statisticsOnly = false;
+    private transient volatile Supplier<Details> detailsLoader;
+    private transient volatile SoftReference<Details> softDetails;
+
     public PathwayNodeData() {
     }
 
@@ -149,16 +180,19 @@ public class PathwayNodeData {
     }
 
     public void addEntity(Identifier identifier, MainIdentifier mainIdentifier) {
+        materialiseDetails();
         this.entities.add(identifier, mainIdentifier);
         this.foundTotal.add(mainIdentifier.getResource(), mainIdentifier.getValue().getId());
     }
 
     public void addInteractors(MainIdentifier mainIdentifier, InteractorIdentifier identifier) {
+        materialiseDetails();
         this.interactors.add(mainIdentifier, identifier);
         this.foundTotal.add(mainIdentifier.getResource(), identifier.getMapsTo());
     }
 
     public void addReactions(MainResource mainResource, Set<AnalysisReaction> reactions) {
+        materialiseDetails();
         this.reactions.add(mainResource, reactions);
     }
 
@@ -180,10 +214,12 @@ public class PathwayNodeData {
     }
 
     public Integer getEntitiesAndInteractorsFound() {
+        if (statisticsOnly) return combinedResult.foundEntitiesAndInteractors;
         return foundTotal.stream().mapToInt(entry -> entry.getValue().size()).sum();
     }
 
     public Integer getEntitiesAndInteractorsFound(boolean importableOnly) {
+        if (statisticsOnly) return !importableOnly ? combinedResult.foundEntitiesAndInteractors : importableResult.foundEntitiesAndInteractors;
         var stream = !importableOnly ?
                 foundTotal.stream() :
                 foundTotal.stream().filter(entry -> !entry.getKey().isAuxMainResource());
@@ -191,6 +227,7 @@ public class PathwayNodeData {
     }
 
     public Integer getEntitiesAndInteractorsFound(MainResource resource) {
+        if (statisticsOnly) return getPrecalculated(resource, c -> c.foundEntitiesAndInteractors);
         Set<String> found = this.foundTotal.getElements(resource);
         return found == null ? 0 : found.size();
     }
@@ -198,9 +235,10 @@ public class PathwayNodeData {
     // ENTITIES Result
 
     public Set<AnalysisIdentifier> getFoundEntities() {
+        Details details = details();
         Set<AnalysisIdentifier> rtn = new HashSet<>();
-        for (Identifier identifier : entities.keySet()) {
-            for (MainIdentifier mainIdentifier : this.entities.getElements(identifier)) {
+        for (Identifier identifier : details.entities.keySet()) {
+            for (MainIdentifier mainIdentifier : details.entities.getElements(identifier)) {
                 rtn.add(mainIdentifier.getValue());
             }
         }
@@ -212,12 +250,12 @@ public class PathwayNodeData {
     }
 
     public List<ExternalIdentifier> getExternalEntities(boolean importableOnly) {
-
+        Details details = details();
         List<ExternalIdentifier> rtn = new ArrayList<>();
 
-        for (Identifier identifier : entities.keySet()) {
+        for (Identifier identifier : details.entities.keySet()) {
             ExternalIdentifier ei = new ExternalIdentifier(identifier.getValue());
-            for (MainIdentifier mainIdentifier : entities.getElements(identifier)) {
+            for (MainIdentifier mainIdentifier : details.entities.getElements(identifier)) {
                 if (!importableOnly || !mainIdentifier.getResource().isAuxMainResource()) {
                     ExternalMainIdentifier emi = new ExternalMainIdentifier(mainIdentifier);
                     ei.addMapsTo(emi);
@@ -230,96 +268,68 @@ public class PathwayNodeData {
 
 
     public Set<AnalysisIdentifier> getFoundEntities(boolean importableOnly) {
-        Stream<MainIdentifier> identifiers = importableOnly ?
-                entities.values().stream().filter(id -> !id.getResource().isAuxMainResource()) :
-                entities.values().stream();
-        return identifiers.map(Identifier::getValue).collect(Collectors.toSet());
+        return details().getFoundEntities(importableOnly);
     }
 
     public Set<AnalysisIdentifier> getFoundEntities(MainResource resource) {
-        Set<AnalysisIdentifier> rtn = new HashSet<>();
-        for (Identifier identifier : entities.keySet()) {
-            for (MainIdentifier mainIdentifier : this.entities.getElements(identifier)) {
-                if (mainIdentifier.getResource().equals(resource)) {
-                    rtn.add(mainIdentifier.getValue());
-                }
-            }
-        }
-        return rtn;
+        return details().getFoundEntities(resource);
     }
 
-    private List<List<Double>> groupEntitiesExpressionValues(
-		    Collection<AnalysisIdentifier> identifiers,
-		    Collection<InteractorIdentifier> interactors) {
-        List<List<Double>> evss = new LinkedList<>();
+    /**
+     * Calculates the average of each expression column for the union of identifiers and interactors,
+     * accumulating their rows of the expression matrix. Missing values (NaN) are not taken into account.
+     */
+    private List<Double> calculateAverage(Collection<AnalysisIdentifier> identifiers,
+                                          Collection<InteractorIdentifier> interactors) {
         Collection<AnalysisIdentifier> aggregation = new HashSet<>();
         aggregation.addAll(identifiers);
         aggregation.addAll(interactors);
+
+        int columns = 0;
         for (AnalysisIdentifier identifier : aggregation) {
-            int i = 0;
-            for (Double ev : identifier.getExp()) {
-                List<Double> evs;
-                if (evss.size() > i) {
-                    evs = evss.get(i);
-                } else {
-                    evs = new LinkedList<>();
-                    evss.add(i, evs);
-                }
-                evs.add(ev);
-                i++;
-            }
+            columns = Math.max(columns, identifier.getExpSize());
         }
-        return evss;
-    }
 
-    private List<Double> calculateAverage(List<List<Double>> expressionValues) {
-        List<Double> avg = new LinkedList<>();
-        int i = 0;
-        for (List<Double> evs : expressionValues) {
-            Double sum = 0.0;
-            Double total = 0.0;
-            for (Double ev : evs) {
-                if (ev != null) {
-                    sum += ev;
-                    total++;
-                }
-            }
-            if (total > 0.0) {
-                avg.add(i++, sum / total);
-            } else {
-                avg.add(i++, null);
-            }
+        double[] sum = new double[columns];
+        int[] total = new int[columns];
+        for (AnalysisIdentifier identifier : aggregation) {
+            identifier.accumulateExp(sum, total);
+        }
+
+        List<Double> avg = new ArrayList<>(columns);
+        for (int i = 0; i < columns; i++) {
+            avg.add(total[i] > 0 ? sum[i] / total[i] : null);
         }
         return avg;
     }
 
-    private List<AnalysisIdentifier> getEntitiesDuplication() {
+    private List<AnalysisIdentifier> getEntitiesDuplication(Details details) {
         List<AnalysisIdentifier> rtn = new LinkedList<>();
-        for (Identifier identifier : entities.keySet()) {
-            for (MainIdentifier mainIdentifier : entities.getElements(identifier)) {
+        for (Identifier identifier : details.entities.keySet()) {
+            for (MainIdentifier mainIdentifier : details.entities.getElements(identifier)) {
                 rtn.add(mainIdentifier.getValue());
             }
         }
         return rtn;
     }
 
-    private List<AnalysisIdentifier> getEntitiesDuplication(boolean importableOnly) {
+    private List<AnalysisIdentifier> getEntitiesDuplication(Details details, boolean importableOnly) {
         return !importableOnly ?
-                entities.stream()
+                details.entities.stream()
                         .flatMap(entry -> entry.getValue().stream().map(MainIdentifier::getValue))
                         .collect(Collectors.toCollection(LinkedList::new)) :
 
-                entities.stream()
+                details.entities.stream()
                         .flatMap(entry -> entry.getValue().stream())
                         .filter(id -> !id.getResource().isAuxMainResource())
                         .map(MainIdentifier::getValue)
                         .collect(Collectors.toCollection(LinkedList::new));
     }
 
-    private List<AnalysisIdentifier> getEntitiesDuplication(MainResource resource) {
+    private List<AnalysisIdentifier> getEntitiesDuplication(Details details, MainResource resource) {
         List<AnalysisIdentifier> rtn = new LinkedList<>();
-        for (Identifier identifier : entities.keySet()) {
-            for (MainIdentifier mainIdentifier : entities.getElements(identifier)) {
+        for (Identifier identifier : details.entities.keySet()) {
+            for (MainIdentifier mainIdentifier : details.entities.getElements(identifier)) {
                 if (mainIdentifier.getResource().equals(resource)) {
                     rtn.add(mainIdentifier.getValue());
                 }
@@ -328,51 +338,57 @@ public class PathwayNodeData {
         return rtn;
     }
 
-    private List<InteractorIdentifier> getInteractorsDuplication() {
+    private List<InteractorIdentifier> getInteractorsDuplication(Details details) {
         List<InteractorIdentifier> rtn = new LinkedList<>();
-        for (MainIdentifier mainIdentifier : interactors.keySet()) {
-            rtn.addAll(interactors.getElements(mainIdentifier));
+        for (MainIdentifier mainIdentifier : details.interactors.keySet()) {
+            rtn.addAll(details.interactors.getElements(mainIdentifier));
         }
         return rtn;
     }
 
-    private List<InteractorIdentifier> getInteractorsDuplication(boolean importableOnly) {
+    private List<InteractorIdentifier> getInteractorsDuplication(Details details, boolean importableOnly) {
         return !importableOnly ?
-                interactors.stream()
+                details.interactors.stream()
                         .flatMap(entry -> entry.getValue().stream())
                         .collect(Collectors.toCollection(LinkedList::new)) :
 
-                interactors.stream()
+                details.interactors.stream()
                         .filter(entry -> !entry.getKey().getResource().isAuxMainResource())
                         .flatMap(entry -> entry.getValue().stream())
                         .collect(Collectors.toCollection(LinkedList::new));
     }
 
-    private List<InteractorIdentifier> getInteractorsDuplication(MainResource resource) {
+    private List<InteractorIdentifier> getInteractorsDuplication(Details details, MainResource resource) {
         List<InteractorIdentifier> rtn = new LinkedList<>();
-        for (MainIdentifier mainIdentifier : interactors.keySet()) {
+        for (MainIdentifier mainIdentifier : details.interactors.keySet()) {
             if (mainIdentifier.getResource().equals(resource)) {
-                rtn.addAll(interactors.getElements(mainIdentifier));
+                rtn.addAll(details.interactors.getElements(mainIdentifier));
             }
         }
         return rtn;
     }
 
     public List<Double> getExpressionValuesAvg() {
-        if (combinedResult.exp != null && !combinedResult.exp.isEmpty()) return combinedResult.exp;
-        return calculateAverage(groupEntitiesExpressionValues(getEntitiesDuplication(), getInteractorsDuplication()));
+        if (statisticsOnly) return nullable(combinedResult.exp);
+        if (combinedResult.exp != null && combinedResult.exp.length > 0) return nullable(combinedResult.exp);
+        Details details = details();
+        return calculateAverage(getEntitiesDuplication(details), getInteractorsDuplication(details));
     }
 
     public List<Double> getExpressionValuesAvg(boolean importableOnly) {
         if (!importableOnly) return this.getExpressionValuesAvg();
-        if (importableResult.exp != null && !importableResult.exp.isEmpty()) return importableResult.exp;
-        return calculateAverage(groupEntitiesExpressionValues(getEntitiesDuplication(true), getInteractorsDuplication(true)));
+        if (statisticsOnly) return nullable(importableResult.exp);
+        if (importableResult.exp != null && importableResult.exp.length > 0) return nullable(importableResult.exp);
+        Details details = details();
+        return calculateAverage(getEntitiesDuplication(details, true), getInteractorsDuplication(details, true));
     }
 
     public List<Double> getExpressionValuesAvg(MainResource resource) {
         final Counter counter = entitiesResult.get(resource);
-        if (counter != null && counter.exp != null && !counter.exp.isEmpty()) return counter.exp;
-        return calculateAverage(groupEntitiesExpressionValues(getEntitiesDuplication(resource), getInteractorsDuplication(resource)));
+        if (statisticsOnly) return counter == null ? new ArrayList<>() : nullable(counter.exp);
+        if (counter != null && counter.exp != null && counter.exp.length > 0) return nullable(counter.exp);
+        Details details = details();
+        return calculateAverage(getEntitiesDuplication(details, resource), getInteractorsDuplication(details, resource));
     }
 
     public Integer getEntitiesCount() {
@@ -392,112 +408,117 @@ public class PathwayNodeData {
     }
 
     public Integer getEntitiesFound() {
+        if (statisticsOnly) return combinedResult.foundEntities;
         return getFoundEntities().size();
     }
 
     public Integer getEntitiesFound(boolean importableOnly) {
+        if (statisticsOnly) return !importableOnly ? combinedResult.foundEntities : importableResult.foundEntities;
         return getFoundEntities(importableOnly).size();
     }
 
     public Integer getEntitiesFound(MainResource resource) {
+        if (statisticsOnly) return getPrecalculated(resource, c -> c.foundEntities);
         return getFoundEntities(resource).size();
     }
 
     public Double getEntitiesPValue() {
-        return this.combinedResult.entitiesPValue;
+        return nullable(this.combinedResult.entitiesPValue);
     }
 
     public Double getEntitiesPValue(boolean importableOnly) {
-        return !importableOnly ? this.combinedResult.entitiesPValue : this.importableResult.entitiesPValue;
+        return nullable(!importableOnly ? this.combinedResult.entitiesPValue : this.importableResult.entitiesPValue);
     }
 
     public Double getEntitiesPValue(MainResource resource) {
         Counter counter = this.entitiesResult.get(resource);
         if (counter != null) {
-            return counter.entitiesPValue;
+            return nullable(counter.entitiesPValue);
         }
         return null;
     }
 
     public Double getEntitiesFDR() {
-        return this.combinedResult.entitiesFDR;
+        return nullable(this.combinedResult.entitiesFDR);
     }
 
     public Double getEntitiesFDR(boolean importableOnly) {
-        return !importableOnly ? this.combinedResult.entitiesFDR : this.importableResult.entitiesFDR;
+        return nullable(!importableOnly ? this.combinedResult.entitiesFDR : this.importableResult.entitiesFDR);
     }
 
     public Double getEntitiesFDR(MainResource resource) {
         Counter counter = this.entitiesResult.get(resource);
         if (counter != null) {
-            return counter.entitiesFDR;
+            return nullable(counter.entitiesFDR);
         }
         return null;
     }
 
     public Double getEntitiesRatio() {
-        return this.combinedResult.entitiesRatio;
+        return nullable(this.combinedResult.entitiesRatio);
     }
 
     public Double getEntitiesRatio(boolean importableOnly) {
-        return !importableOnly ? this.combinedResult.entitiesRatio : this.importableResult.entitiesRatio;
+        return nullable(!importableOnly ? this.combinedResult.entitiesRatio : this.importableResult.entitiesRatio);
     }
 
 
     public Double getEntitiesRatio(MainResource resource) {
         Counter counter = this.entitiesResult.get(resource);
         if (counter != null) {
-            return counter.entitiesRatio;
+            return nullable(counter.entitiesRatio);
         }
         return null;
     }
 
     public Double getInteractorsRatio() {
-        return this.combinedResult.interactorsRatio;
+        return nullable(this.combinedResult.interactorsRatio);
     }
 
     public Double getInteractorsRatio(boolean importableOnly) {
-        return !importableOnly ? this.combinedResult.interactorsRatio : this.importableResult.interactorsRatio;
+        return nullable(!importableOnly ? this.combinedResult.interactorsRatio : this.importableResult.interactorsRatio);
     }
 
     public Double getInteractorsRatio(MainResource resource) {
         Counter counter = this.entitiesResult.get(resource);
         if (counter != null) {
-            return counter.interactorsRatio;
+            return nullable(counter.interactorsRatio);
         }
         return null;
     }
 
     //TODO: Provide with the pathway identifiers mapping to main identifiers
     public MapSet<Identifier, MainIdentifier> getIdentifierMap() {
-        return entities;
+        return details().entities;
     }
 
 
     public MapSet<MainIdentifier, InteractorIdentifier> getInteractorMap() {
-        return interactors;
+        return details().interactors;
     }
 
     // INTERACTORS Result
 
     public Set<InteractorIdentifier> getFoundInteractors() {
-        return interactors.values();
+        return details().interactors.values();
     }
 
     public Set<InteractorIdentifier> getFoundInteractors(boolean importableOnly) {
+        Details details = details();
         return !importableOnly ?
-                interactors.values() :
-                interactors.stream()
+                details.interactors.values() :
+                details.interactors.stream()
                         .filter(entry -> !entry.getKey().getResource().isAuxMainResource())
                         .flatMap(entry -> entry.getValue().stream())
                         .collect(Collectors.toSet());
     }
 
     public Set<InteractorIdentifier> getFoundInteractors(MainResource resource) {
+        Details details = details();
         Set<InteractorIdentifier> rtn = new HashSet<>();
-        for (MainIdentifier mainIdentifier : interactors.keySet()) {
+        for (MainIdentifier mainIdentifier : details.interactors.keySet()) {
             if (mainIdentifier.getResource().equals(resource)) {
-                rtn.addAll(interactors.getElements(mainIdentifier));
+                rtn.addAll(details.interactors.getElements(mainIdentifier));
             }
         }
         return rtn;
@@ -520,6 +541,7 @@ public class PathwayNodeData {
     }
 
     public Integer getInteractorsFound() {
+        if (statisticsOnly) return combinedResult.foundInteractors;
         Set<String> mapsTo = new HashSet<>();
         for (InteractorIdentifier interactor : getFoundInteractors()) {
             mapsTo.add(interactor.getMapsTo());
@@ -528,6 +550,7 @@ public class PathwayNodeData {
     }
 
     public Integer getInteractorsFound(boolean importableOnly) {
+        if (statisticsOnly) return !importableOnly ? combinedResult.foundInteractors : importableResult.foundInteractors;
         return Math.toIntExact(
                 getFoundInteractors(importableOnly).stream()
                         .map(InteractorIdentifier::getMapsTo)
@@ -537,6 +560,7 @@ public class PathwayNodeData {
     }
 
     public Integer getInteractorsFound(MainResource resource) {
+        if (statisticsOnly) return getPrecalculated(resource, c -> c.foundInteractors);
         Set<String> mapsTo = new HashSet<>();
         for (InteractorIdentifier interactor : getFoundInteractors(resource)) {
             mapsTo.add(interactor.getMapsTo());
@@ -545,12 +569,13 @@ public class PathwayNodeData {
     }
 
     public List<ExternalInteractor> getExternalInteractors(boolean importableOnly) {
+        Details details = details();
         Map<String, ExternalInteractor> identifierMap = new HashMap<>();
         Map<String, ExternalInteraction> interactionMap = new HashMap<>();
-        for (MainIdentifier mi : interactors.keySet()) {
+        for (MainIdentifier mi : details.interactors.keySet()) {
             if (!importableOnly || !mi.getResource().isAuxMainResource()) {
                 ExternalMainIdentifier emi = new ExternalMainIdentifier(mi);
-                for (InteractorIdentifier interactor : interactors.getElements(mi)) {
+                for (InteractorIdentifier interactor : details.interactors.getElements(mi)) {
                     String id = interactor.getId();
                     ExternalInteractor ei = identifierMap.getOrDefault(id, new ExternalInteractor(interactor));
                     identifierMap.put(id, ei);
@@ -571,20 +596,22 @@ public class PathwayNodeData {
     // REACTIONS Result
 
     public Set<AnalysisReaction> getReactions() {
-        return reactions.values();
+        return details().reactions.values();
     }
 
     public Set<AnalysisReaction> getReactions(boolean importableOnly) {
+        Details details = details();
         return !importableOnly ?
-                reactions.values() :
-                reactions.stream()
+                details.reactions.values() :
+                details.reactions.stream()
                         .filter(entry -> !entry.getKey().isAuxMainResource())
                         .flatMap(entry -> entry.getValue().stream())
                         .collect(Collectors.toSet());
     }
 
     public Set<AnalysisReaction> getReactions(MainResource resource) {
-        Set<AnalysisReaction> rtn = reactions.getElements(resource);
+        Details details = details();
+        Set<AnalysisReaction> rtn = details.reactions.getElements(resource);
         if (rtn == null) {
             rtn = new HashSet<>();
         }
@@ -592,10 +619,11 @@ public class PathwayNodeData {
     }
 
     public List<ExternalAnalysisReaction> getExternalReactions(boolean importableOnly) {
+        Details details = details();
         Map<Long, ExternalAnalysisReaction> map = new HashMap<>();
-        for (MainResource mr : reactions.keySet()) {
+        for (MainResource mr : details.reactions.keySet()) {
             if (!importableOnly || !mr.isAuxMainResource()) {
-                for (AnalysisReaction rxn : reactions.getElements(mr)) {
+                for (AnalysisReaction rxn : details.reactions.getElements(mr)) {
                     ExternalAnalysisReaction erxn = map.getOrDefault(rxn.getDbId(), new ExternalAnalysisReaction(rxn));
                     map.put(rxn.getDbId(), erxn);
                     erxn.add(mr.getName());
@@ -635,29 +663,32 @@ public class PathwayNodeData {
     }
 
     public Integer getReactionsFound() {
+        if (statisticsOnly) return combinedResult.foundReactions;
         return this.getReactions().size();
     }
 
     public Integer getReactionsFound(boolean importableOnly) {
+        if (statisticsOnly) return !importableOnly ? combinedResult.foundReactions : importableResult.foundReactions;
         return this.getReactions(importableOnly).size();
     }
 
     public Integer getReactionsFound(MainResource resource) {
+        if (statisticsOnly) return getPrecalculated(resource, c -> c.foundReactions);
         return this.getReactions(resource).size();
     }
 
     public Double getReactionsRatio() {
-        return this.combinedResult.reactionsRatio;
+        return nullable(this.combinedResult.reactionsRatio);
     }
 
     public Double getReactionsRatio(boolean importableOnly) {
-        return !importableOnly ? this.combinedResult.reactionsRatio : this.importableResult.reactionsRatio;
+        return nullable(!importableOnly ? this.combinedResult.reactionsRatio : this.importableResult.reactionsRatio);
     }
 
     public Double getReactionsRatio(MainResource resource) {
         Counter counter = this.entitiesResult.get(resource);
         if (counter != null) {
-            return counter.reactionsRatio;
+            return nullable(counter.reactionsRatio);
         }
         return null;
     }
@@ -667,23 +698,24 @@ public class PathwayNodeData {
     }
 
     public boolean hasResult() {
+        if (statisticsOnly) return combinedResult.foundEntitiesAndInteractors > 0;
         return !foundTotal.isEmpty();
 //        return !entities.isEmpty() || !interactors.isEmpty();
     }
 
     public void setEntitiesFDR(Double fdr) {
-        this.combinedResult.entitiesFDR = fdr;
+        this.combinedResult.entitiesFDR = primitive(fdr);
     }
 
     public void setEntitiesFDR(boolean importableOnly, Double fdr) {
         if (!importableOnly)
-            this.combinedResult.entitiesFDR = fdr;
+            this.combinedResult.entitiesFDR = primitive(fdr);
         else
-            this.importableResult.entitiesFDR = fdr;
+            this.importableResult.entitiesFDR = primitive(fdr);
     }
 
     public void setEntitiesFDR(MainResource resource, Double fdr) {
-        this.entitiesResult.get(resource).entitiesFDR = fdr;
+        this.entitiesResult.get(resource).entitiesFDR = primitive(fdr);
     }
 
     //This is only called in build time
@@ -742,7 +774,7 @@ public class PathwayNodeData {
             Set<InteractorIdentifier> interactors = temp.getElements(mainResource);
             counter.totalInteractors = interactors == null ? 0 : interactors.size();
             counter.interactorsRatio = counter.totalFound / speciesData.getEntitiesAndInteractorsCount(mainResource).doubleValue();
-            if (counter.interactorsRatio.isNaN() || counter.interactorsRatio.isInfinite()) {
+            if (Double.isNaN(counter.interactorsRatio) || Double.isInfinite(counter.interactorsRatio)) {
                 counter.interactorsRatio = 0.0;
             }
             combinedResult.totalInteractors += counter.totalInteractors;
@@ -799,6 +831,108 @@ public class PathwayNodeData {
         counter.foundReactions = getReactionsFound(importableOnly);
     }
 
+    /**
+     * Creates a copy keeping the statistics (including the found figures and the expression averages) but not the
+     * details about the found entities, interactors and reactions. The details can be provided afterwards with
+     * setDetailsLoader so they are only loaded when needed.
+     */
+    public PathwayNodeData getStatistics() {
+        PathwayNodeData rtn = new PathwayNodeData();
+        rtn.statisticsOnly = true;
+        //The details are only created when they are needed
+        rtn.foundTotal = null;
+        rtn.entities = null;
+        rtn.reactions = null;
+        rtn.interactors = null;
+        rtn.combinedResult = getStatistics(combinedResult, getEntitiesFound(), getInteractorsFound(), getReactionsFound(),
+                getEntitiesAndInteractorsFound(), getExpressionValuesAvg());
+        rtn.importableResult = getStatistics(importableResult, getEntitiesFound(true), getInteractorsFound(true), getReactionsFound(true),
+                getEntitiesAndInteractorsFound(true), getExpressionValuesAvg(true));
+        for (MainResource mr : entitiesResult.keySet()) {
+            rtn.entitiesResult.put(mr, getStatistics(entitiesResult.get(mr), getEntitiesFound(mr), getInteractorsFound(mr), getReactionsFound(mr),
+                    getEntitiesAndInteractorsFound(mr), getExpressionValuesAvg(mr)));
+        }
+        return rtn;
+    }
+
+    private Counter getStatistics(Counter counter, int entities, int interactors, int reactions, int total, List<Double> exp) {
+        Counter rtn = new Counter(counter);
+        rtn.foundEntities = entities;
+        rtn.foundInteractors = interactors;
+        rtn.foundReactions = reactions;
+        rtn.foundEntitiesAndInteractors = total;
+        rtn.exp = primitive(exp);
+        return rtn;
+    }
+
+    private Integer getPrecalculated(MainResource resource, Function<Counter, Integer> value) {
+        Counter counter = this.entitiesResult.get(resource);
+        return counter == null ? 0 : value.apply(counter);
+    }
+
+    /**
+     * PLEASE NOTE: When the details have not been loaded yet, they are provided by the loader but not kept
+     */
+    public Details getDetails() {
+        Supplier<Details> loader = detailsLoader;
+        if (loader != null) {
+            SoftReference<Details> reference = softDetails;
+            Details loaded = reference == null ? null : reference.get();
+            return loaded != null ? loaded : loader.get();
+        }
+        return details();
+    }
+
+    /**
+     * The loader is called the first time the details are needed and again whenever the garbage collector has
+     * reclaimed them (see details)
+     */
+    public void setDetailsLoader(Supplier<Details> detailsLoader) {
+        this.detailsLoader = detailsLoader;
+        this.softDetails = null;
+    }
+
+    /**
+     * PLEASE NOTE: Instances of this class are shared by the cached results, so the loaded details are only softly
+     * referenced to avoid them growing the cache beyond its weight. They are kept in the fields when the data is
+     * being modified (see materialiseDetails)
+     */
+    private Details details() {
+        Supplier<Details> loader = detailsLoader;
+        if (loader == null) {
+            if (entities == null) materialiseDetails();
+            return new Details(foundTotal, entities, reactions, interactors);
+        }
+        SoftReference<Details> reference = softDetails;
+        Details rtn = reference == null ? null : reference.get();
+        if (rtn == null) {
+            synchronized (this) {
+                reference = softDetails;
+                rtn = reference == null ? null : reference.get();
+                if (rtn == null) {
+                    rtn = loader.get();
+                    softDetails = new SoftReference<>(rtn);
+                }
+            }
+        }
+        return rtn;
+    }
+
+    private void materialiseDetails() {
+        if (detailsLoader == null && entities != null) return;
+        synchronized (this) {
+            if (detailsLoader == null && entities != null) return;
+            Details details = detailsLoader != null ?
+                    getDetails() :
+                    new Details(new MapSet<>(), new MapSet<>(), new MapSet<>(), new MapSet<>());
+            this.foundTotal = details.foundTotal;
+            this.entities = details.entities;
+            this.reactions = details.reactions;
+            this.interactors = details.interactors;
+            this.detailsLoader = null;
+            this.softDetails = null;
+        }
+    }
 
     protected Double getScore() {
         return getScore(this.combinedResult);
@@ -813,8 +947,8 @@ public class PathwayNodeData {
     }
 
     private Double getScore(Counter counter) {
-        double entitiesPercentage = counter.foundEntities / counter.totalEntities.doubleValue();
-        double reactionsPercentage = counter.foundReactions / counter.totalReactions.doubleValue();
+        double entitiesPercentage = counter.foundEntities / (double) counter.totalEntities;
+        double reactionsPercentage = counter.foundReactions / (double) counter.totalReactions;
         return (0.75 * (reactionsPercentage)) + (0.25 * (entitiesPercentage));
     }
 
@@ -826,4 +960,84 @@ public class PathwayNodeData {
         }
         return counter;
     }
+
+    private static int primitive(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private static double primitive(Double value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static double[] primitive(List<Double> values) {
+        if (values == null) return null;
+        double[] rtn = new double[values.size()];
+        for (int i = 0; i < rtn.length; i++) rtn[i] = primitive(values.get(i));
+        return rtn;
+    }
+
+    private static Double nullable(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    private static List<Double> nullable(double[] values) {
+        List<Double> rtn = new ArrayList<>(values.length);
+        for (double value : values) rtn.add(nullable(value));
+        return rtn;
+    }
+
+    /**
+     * The found entities, interactors and reactions of the pathway
+     */
+    public static class Details {
+        private final MapSet<MainResource, String> foundTotal;
+        private final MapSet<Identifier, MainIdentifier> entities;
+        private final MapSet<MainResource, AnalysisReaction> reactions;
+        private final MapSet<MainIdentifier, InteractorIdentifier> interactors;
+
+        public Details(MapSet<MainResource, String> foundTotal,
+                       MapSet<Identifier, MainIdentifier> entities,
+                       MapSet<MainResource, AnalysisReaction> reactions,
+                       MapSet<MainIdentifier, InteractorIdentifier> interactors) {
+            this.foundTotal = foundTotal;
+            this.entities = entities;
+            this.reactions = reactions;
+            this.interactors = interactors;
+        }
+
+        public MapSet<MainResource, String> getFoundTotal() {
+            return foundTotal;
+        }
+
+        public MapSet<Identifier, MainIdentifier> getEntities() {
+            return entities;
+        }
+
+        public MapSet<MainResource, AnalysisReaction> getReactions() {
+            return reactions;
+        }
+
+        public MapSet<MainIdentifier, InteractorIdentifier> getInteractors() {
+            return interactors;
+        }
+
+        public Set<AnalysisIdentifier> getFoundEntities(boolean importableOnly) {
+            Stream<MainIdentifier> identifiers = importableOnly ?
+                    entities.values().stream().filter(id -> !id.getResource().isAuxMainResource()) :
+                    entities.values().stream();
+            return identifiers.map(Identifier::getValue).collect(Collectors.toSet());
+        }
+
+        public Set<AnalysisIdentifier> getFoundEntities(MainResource resource) {
+            Set<AnalysisIdentifier> rtn = new HashSet<>();
+            for (Identifier identifier : entities.keySet()) {
+                for (MainIdentifier mainIdentifier : entities.getElements(identifier)) {
+                    if (mainIdentifier.getResource().equals(resource)) {
+                        rtn.add(mainIdentifier.getValue());
+                    }
+                }
+            }
+            return rtn;
+        }
+    }
 }
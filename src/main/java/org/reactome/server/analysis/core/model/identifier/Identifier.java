@@ -1,6 +1,7 @@
 package org.reactome.server.analysis.core.model.identifier;
 
 import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
 import org.reactome.server.analysis.core.model.resource.Resource;
 
 /**
@@ -27,6 +28,11 @@ public abstract class Identifier<R extends Resource> {
         return resource.is(name);
     }
 
+    /**
+     * @return a copy with the same resource whose value keeps its expression values in the matrices of the compaction
+     */
+    public abstract Identifier<R> copy(ExpressionMatrix.Compaction compaction);
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,6 +1,7 @@
 package org.reactome.server.analysis.core.model.identifier;
 
 import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
 
 import java.util.Objects;
 
@@ -22,13 +23,18 @@ public class InteractorIdentifier extends AnalysisIdentifier {
     }
 
     public InteractorIdentifier(AnalysisIdentifier identifier) {
-        super(identifier.getId(), identifier.getExp());
+        super(identifier.getId(), identifier);
     }
 
     public String getMapsTo() {
         return mapsTo;
     }
 
+    @Override
+    protected AnalysisIdentifier copy(ExpressionMatrix.Compaction compaction) {
+        return new InteractorIdentifier(super.copy(compaction), mapsTo);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,6 +1,7 @@
 package org.reactome.server.analysis.core.model.identifier;
 
 import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
 import org.reactome.server.analysis.core.model.resource.MainResource;
 import org.reactome.server.analysis.core.model.resource.ResourceFactory;
 import org.reactome.server.analysis.core.result.external.ExternalMainIdentifier;
@@ -29,6 +30,11 @@ public class MainIdentifier extends Identifier<MainResource> {
         super(ResourceFactory.getMainResource(mainIdentifier.getResource()), new AnalysisIdentifier(mainIdentifier.getId(), exp));
     }
 
+    @Override
+    public MainIdentifier copy(ExpressionMatrix.Compaction compaction) {
+        return new MainIdentifier(resource, compaction.copy(value));
+    }
+
     public boolean is(ResourceFactory.MAIN type){
         return this.is(type.name());
     }
@@ -1,6 +1,7 @@
 package org.reactome.server.analysis.core.model.identifier;
 
 import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
 import org.reactome.server.analysis.core.model.resource.Resource;
 
 /**
@@ -12,4 +13,9 @@ public class OtherIdentifier extends Identifier<Resource> {
         super(resource, identifier);
     }
 
+    @Override
+    public OtherIdentifier copy(ExpressionMatrix.Compaction compaction) {
+        return new OtherIdentifier(resource, compaction.copy(value));
+    }
+
 }
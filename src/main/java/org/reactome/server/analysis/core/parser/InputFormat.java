@@ -1,15 +1,28 @@
 package org.reactome.server.analysis.core.parser;
 
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
 import org.reactome.server.analysis.core.parser.exception.ParserException;
 import org.reactome.server.analysis.core.parser.response.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Parser for AnalysisData tool
@@ -30,12 +43,14 @@ public class InputFormat {
     // Regex for parsing the content when we do not have the header, trying to build a default one
     private static final String NO_HEADER_DEFAULT_REGEX = "[\\s,;]+";
 
-    // Regex used to split the content of a single line file
-    // Note: using + instead of * avoids replacing empty Strings therefore may speed up the process.
-    private static final String ONE_LINE_CONTENT_SPLIT_REGEX = "[\\s,;]+";
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
 
-    // Regex used to split the content of a multiple line file
-    private static final String MULTI_LINE_CONTENT_SPLIT_REGEX = "[\\s,;]+";
+    // Content shorter than this is not worth splitting for the parallel parsing
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_PROCESSOR = 4;
 
     private List<String> headerColumnNames = new LinkedList<>();
     private final Set<AnalysisIdentifier> analysisIdentifierSet = new LinkedHashSet<>();
@@ -47,6 +62,8 @@ public class InputFormat {
     private final List<String> errorResponses = new LinkedList<>();
     private final List<String> warningResponses = new LinkedList<>();
 
+    private final ContentParser content = new ContentParser(analysisIdentifierSet, warningResponses, errorResponses);
+
     // Ignoring the initial blank lines and start parsing from the first valid line.
     private int startOnLine = 0;
 
@@ -59,27 +76,197 @@ public class InputFormat {
      * @param input file already converted into a String.
      */
     public void parseData(String input) throws ParserException {
+        try {
+            parseData(new StringReader(input));
+        } catch (IOException e) {
+            // A StringReader does not throw IOException while reading
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Same as parseData(Reader) decoding the bytes with the platform default charset.
+     *
+     * @param is the submitted data
+     */
+    public void parseData(InputStream is) throws IOException, ParserException {
+        parseData(new InputStreamReader(is, Charset.defaultCharset()));
+    }
+
+    /**
+     * Same as parseData(InputStream) digesting the bytes while they are read, so the MD5 of the submitted
+     * data is known without a second pass over it.
+     *
+     * @param is the submitted data
+     * @return the MD5 (hex) of the submitted bytes
+     */
+    public String parseDataWithMD5(InputStream is) throws IOException, ParserException {
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        parseData(new DigestInputStream(is, md5));
+        return Hex.encodeHexString(md5.digest());
+    }
+
+    /**
+     * Same as parseData(Reader) decoding the bytes with the platform default charset.
+     *
+     * @param channel the submitted data
+     */
+    public void parseData(ReadableByteChannel channel) throws IOException, ParserException {
+        parseData(Channels.newReader(channel, Charset.defaultCharset().newDecoder(), -1));
+    }
+
+    /**
+     * Parses the submitted data in one single pass without keeping the whole content in memory.
+     * Warnings and errors are exactly the same as for parseData(String).
+     * <p>
+     * ParserException is thrown only when there are errors.
+     *
+     * @param reader the submitted data
+     */
+    public void parseData(Reader reader) throws IOException, ParserException {
+        parseData(reader, null);
+    }
+
+    /**
+     * Parses the submitted data in one single pass without keeping the whole content in memory.
+     * Every new identifier is handed to the consumer as soon as it is parsed (duplicates are not).
+     * <p>
+     * ParserException is thrown only when there are errors.
+     *
+     * @param reader   the submitted data
+     * @param consumer receives the identifiers as they are parsed (can be null)
+     */
+    public void parseData(Reader reader, Consumer<AnalysisIdentifier> consumer) throws IOException, ParserException {
         long start = System.currentTimeMillis();
+        content.consumer = consumer;
+
+        LineReader lines = new LineReader(reader);
+        if (analyseFirstLines(lines)) {
+            analyseRemainingLines(lines);
+        }
 
-        String clean = input.trim();
-        if (clean.equalsIgnoreCase("")) {
+        finishParsing(start);
+    }
+
+    /**
+     * Same as parseData(String) but, once the header has been analysed, the rest of the content is split on
+     * line boundaries in chunks that are parsed in the executor. The chunks are merged in the original order,
+     * so identifiers (keeping their first occurrence), warnings and errors are exactly the same as for the
+     * sequential parsing. Small contents are parsed sequentially.
+     * <p>
+     * ParserException is thrown only when there are errors.
+     *
+     * @param input    file already converted into a String.
+     * @param executor where the chunks are parsed
+     */
+    public void parseData(String input, ExecutorService executor) throws ParserException {
+        long start = System.currentTimeMillis();
+        content.consumer = null;
+
+        LineReader lines = new LineReader(new StringReader(input));
+        try {
+            if (analyseFirstLines(lines)) {
+                int chunks = Math.min((input.length() - lines.getOffset()) / MIN_CHUNK_SIZE, CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+                if (chunks > 1) {
+                    analyseChunks(input, lines.getOffset(), lines.getLineNumber() + 1, chunks, executor);
+                } else {
+                    analyseRemainingLines(lines);
+                }
+            }
+        } catch (IOException e) {
+            // A StringReader does not throw IOException while reading
+            logger.error(e.getMessage(), e);
+        }
+
+        finishParsing(start);
+    }
+
+    /**
+     * Reads lines until the second non-empty one is found and then analyses the header and those first lines.
+     * Lines are kept aside only until we know whether it is a one line file or not.
+     *
+     * @return true if there is more content to be analysed
+     */
+    private boolean analyseFirstLines(LineReader lines) throws IOException {
+        List<String> firstLines = new ArrayList<>();
+        int nonEmptyLines = 0;
+
+        String line;
+        while ((line = lines.readLine()) != null) {
+            firstLines.add(line);
+            if (!line.trim().isEmpty() && ++nonEmptyLines > 1) {
+                startContent(firstLines);
+                return true;
+            }
+        }
+
+        if (nonEmptyLines == 0) {
             // no data to be analysed
             errorResponses.add(Response.getMessage(Response.EMPTY_FILE));
         } else {
-            // Split lines
-            String[] lines = input.split("\r?\n"); // Do not add + here. It will remove empty lines
+            isOneLineFile(firstLines);
+        }
+        return false;
+    }
 
-            // check and parser whether one line file is present.
-            boolean isOneLine = isOneLineFile(lines);
-            if (!isOneLine) {
-                // Prepare header
-                analyseHeaderColumns(lines);
+    private void analyseRemainingLines(LineReader lines) throws IOException {
+        String line;
+        while ((line = lines.readLine()) != null) {
+            content.analyseLine(line, lines.getLineNumber());
+        }
+    }
 
-                // Prepare content
-                analyseContent(lines);
+    /**
+     * Splits the content from offset on in chunks ending in a line break. Every chunk is parsed in the executor
+     * by its own ContentParser and then merged in order into the main one.
+     *
+     * @param input      the submitted data
+     * @param offset     position of the first character not analysed yet
+     * @param lineNumber line number of the line starting in offset
+     * @param chunks     number of chunks to split the content into
+     * @param executor   where the chunks are parsed
+     */
+    private void analyseChunks(String input, int offset, int lineNumber, int chunks, ExecutorService executor) throws ParserException {
+        int length = input.length() - offset;
+        List<Future<ContentParser>> futures = new ArrayList<>(chunks);
+        int from = offset;
+        for (int i = 1; i <= chunks && from < input.length(); i++) {
+            int to = input.length();
+            if (i < chunks) {
+                int lineBreak = input.indexOf('\n', Math.max(from, offset + (int) ((long) i * length / chunks)));
+                if (lineBreak >= 0) to = lineBreak + 1;
+            }
+            final int chunkFrom = from, chunkTo = to, chunkLineNumber = lineNumber;
+            futures.add(executor.submit(() -> {
+                ContentParser chunk = new ContentParser(new LinkedHashSet<>(), new ArrayList<>(), new ArrayList<>());
+                chunk.analyseLines(input, chunkFrom, chunkTo, chunkLineNumber);
+                return chunk;
+            }));
+            for (int j = from; j < to; j++) {
+                if (input.charAt(j) == '\n') lineNumber++;
             }
+            from = to;
+        }
 
+        try {
+            for (Future<ContentParser> future : futures) {
+                content.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new ParserException("Parsing interrupted", errorResponses);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
         }
+    }
+
+    private void finishParsing(long start) throws ParserException {
+        content.trim();
 
         long end = System.currentTimeMillis();
         logger.debug("Elapsed Time Parsing the data: " + (end - start) + ".ms");
@@ -88,46 +275,33 @@ public class InputFormat {
             logger.warn("Errors found while parsing analysis submitted data");
             throw new ParserException("Error while parsing your data", errorResponses);
         }
-
     }
 
     /**
      * ---- FOR VERY SPECIFIC CASES, BUT VERY USEFUL FOR REACTOME ----
      * There are cases where the user inputs a file with one single line to be analysed
-     * This method performs a quick view into the file and count the lines. It stops if file has more than one line.
+     * Once the whole file has been read without finding a second non-empty line, the only one is analysed here.
      * p.s empty lines are always ignored
-     * To avoid many iteration to the same file, during counting lines the main attributes are being set and used in the
-     * analyse content method.
      * This method ignores blank lines,spaces, tabs and so on.
      *
-     * @param input the file
-     * @return true if file has one line, false otherwise.
+     * @param input the file lines (only one of them is not blank)
      */
-    private boolean isOneLineFile(String[] input) {
-        int countNonEmptyLines = 0;
+    private void isOneLineFile(List<String> input) {
         String validLine = "";
 
         for (String s : input) {
             // Cleaning the line in other to eliminate blank or spaces spread in the file
             String cleanLine = s.trim();
             if (StringUtils.isNotEmpty(cleanLine) || StringUtils.isNotBlank(cleanLine)) {
-                countNonEmptyLines++;
-
                 // Line without parsing - otherwise we can't eliminate blank space and tabs spread in the file.
                 validLine = s;
-
-                // We don't need to keep counting...
-                if (countNonEmptyLines > 1) {
-                    return false;
-                }
+                break;
             }
         }
 
         hasHeader = false;
 
         analyseOneLineFile(validLine);
-
-        return true;
     }
 
     /**
@@ -140,26 +314,18 @@ public class InputFormat {
     private void analyseOneLineFile(String line) {
         long start = System.nanoTime();
 
-        Pattern p = Pattern.compile(ONE_LINE_CONTENT_SPLIT_REGEX);
-
         // Line cannot start with # or //
         if (hasHeaderLine(line)) {
             errorResponses.add(Response.getMessage(Response.START_WITH_HASH));
             return;
         }
 
-        // Note that using String.replaceAll() will compile the regular expression each time you call it.
-        line = p.matcher(line).replaceAll(" ");
-
-        // StringTokenizer has more performance to offer than String.slit
-        StringTokenizer st = new StringTokenizer(line); //space is default delimiter.
-
-        int tokens = st.countTokens();
+        int tokens = content.scanTokens(line);
         if (tokens > 0) {
             headerColumnNames.add(DEFAULT_IDENTIFIER_HEADER);
-            while (st.hasMoreTokens()) {
-                AnalysisIdentifier rtn = new AnalysisIdentifier(st.nextToken().trim());
-                analysisIdentifierSet.add(rtn);
+            for (int t = 0; t < tokens; t++) {
+                AnalysisIdentifier rtn = new AnalysisIdentifier(content.getToken(line, t).trim());
+                content.addIdentifier(rtn);
             }
         }
 
@@ -167,22 +333,38 @@ public class InputFormat {
         logger.debug("Elapsed time on AnalyseContent: " + (end - start) + ".ms");
     }
 
+    /**
+     * Analyses the header and the content of the lines read so far (they contain two non-empty lines)
+     *
+     * @param lines the first lines of the file
+     */
+    private void startContent(List<String> lines) {
+        // Prepare header
+        analyseHeaderColumns(lines);
+
+        // Prepare content
+        if (hasHeader) startOnLine += 1;
+        for (int i = startOnLine; i < lines.size(); ++i) {
+            content.analyseLine(lines.get(i), i + 1);
+        }
+    }
+
     /**
      * Analyse header based on the first line.
      * Headers must start with # or //
      *
      * @param data is the file lines
      */
-    private void analyseHeaderColumns(String[] data) {
+    private void analyseHeaderColumns(List<String> data) {
         long start = System.currentTimeMillis();
 
         // Verify in which line the file content starts. Some cases, file has a bunch of blank line in the firsts lines.
         // StartOnLine will be important in the content analysis. Having this attribute we don't to iterate and ignore
         // blank lines in the beginning.
         String headerLine = "";
-        for (int i = 0; i < data.length; i++) {
-            if (StringUtils.isNotEmpty(data[i])) {
-                headerLine = data[i];
+        for (int i = 0; i < data.size(); i++) {
+            if (StringUtils.isNotEmpty(data.get(i))) {
+                headerLine = data.get(i);
                 startOnLine = i;
                 break;
             }
@@ -255,59 +437,20 @@ public class InputFormat {
         }
     }
 
-    /**
-     * Analyse all the data itself.
-     * Replace any character like space, comma, semicolon, tab into a space and then replace split by space.
-     *
-     * @param content line array
-     */
-    private void analyseContent(String[] content) {
-        long start = System.nanoTime();
-        if (hasHeader) startOnLine += 1;
-
-        Pattern p = Pattern.compile(MULTI_LINE_CONTENT_SPLIT_REGEX);
-
-        for (int i = startOnLine; i < content.length; ++i) {
-            String line = content[i].trim();
-            if (line.isEmpty()) {
-                warningResponses.add(Response.getMessage(Response.EMPTY_LINE, i + 1));
-                continue;
-            }
-
-            // Note: that using String.replaceAll() will compile the regular expression each time you call it.
-            line = p.matcher(line).replaceAll(" ");
-
-            // StringTokenizer has more performance to offer than String.slit.
-            StringTokenizer st = new StringTokenizer(line); //space is default delimiter.
-
-            int tokens = st.countTokens();
-            if (tokens > 0) {
-                // analyse if each line has the same amount of columns as the threshold based on first line, otherwise an error will be reported.
-                if (thresholdColumn == tokens) {
-                    String first = st.nextToken();
-                    AnalysisIdentifier rtn = new AnalysisIdentifier(first);
-                    int j = 1;
-                    boolean validLine = true;
-                    while (st.hasMoreTokens()) {
-                        String token = st.nextToken().trim();
-                        Double parsedValue = parseValue(token);
-                        if (parsedValue != null) {
-                            rtn.add(parsedValue);
-                        } else {
-                            warningResponses.add(Response.getMessage(Response.INLINE_PROBLEM, i + 1, j + 1));
-                            validLine = false;
-                        }
-                        j++;
-                    }
-                    if(validLine) analysisIdentifierSet.add(rtn);
-                } else {
-                    errorResponses.add(Response.getMessage(Response.COLUMN_MISMATCH, i + 1, thresholdColumn, tokens));
-                }
-            }
+    private static boolean isDelimiter(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case ',':
+            case ';':
+                return true;
+            default:
+                return false;
         }
-
-        long end = System.nanoTime();
-        logger.debug("Elapsed time on AnalyseContent: " + (end - start) + ".ms");
     }
 
     private static boolean hasHeaderLine(String line) {
@@ -333,6 +476,35 @@ public class InputFormat {
         }
     }
 
+    /**
+     * MD5 of the parsed content instead of the submitted bytes: the header column names followed by the identifiers
+     * (sorted) and their expression values. Submissions only differing in delimiters, white spaces, empty lines,
+     * duplicates or the order of the identifiers get the same one.
+     *
+     * @return the MD5 (hex) of the parsed content
+     */
+    public String getContentMD5() {
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        for (String columnName : headerColumnNames) {
+            md5.update(columnName.getBytes(StandardCharsets.UTF_8));
+            md5.update((byte) '\t');
+        }
+        List<AnalysisIdentifier> identifiers = new ArrayList<>(analysisIdentifierSet);
+        Collections.sort(identifiers);
+        byte[] value = new byte[8];
+        for (AnalysisIdentifier identifier : identifiers) {
+            md5.update((byte) '\n');
+            md5.update(identifier.getId().getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < identifier.getExpSize(); i++) {
+                long bits = Double.doubleToLongBits(identifier.getExpValue(i));
+                for (int b = 0; b < 8; b++) value[b] = (byte) (bits >>> (56 - 8 * b));
+                md5.update((byte) '\t');
+                md5.update(value);
+            }
+        }
+        return Hex.encodeHexString(md5.digest());
+    }
+
     public List<String> getHeaderColumnNames() {
         return headerColumnNames;
     }
@@ -341,6 +513,13 @@ public class InputFormat {
         return analysisIdentifierSet;
     }
 
+    /**
+     * @return the expression values of the parsed identifiers (null when there are not expression columns)
+     */
+    public ExpressionMatrix getExpressionMatrix() {
+        return content.matrix;
+    }
+
     /**
      * An easy handy method for determining if the parse succeeded
      *
@@ -374,13 +553,329 @@ public class InputFormat {
      * @return a double or null if couldn't parse it.
      */
     public Double parseValue(String str) {
-        Double ret = null;
-        if (str == null) return ret;
-        try {
-            ret = Double.valueOf(str);
-        } catch (NumberFormatException e) {
-            ret = null;
+        if (str == null) return null;
+        double value = parseDouble(str);
+        return Double.isNaN(value) && !isNaN(str) ? null : value;
+    }
+
+    /**
+     * Parses a decimal number ([+-]digits[.digits][(e|E)[+-]digits][fFdD]) without throwing exceptions.
+     * When the mantissa fits in 15 digits and the exponent in 22 the result is calculated straight away
+     * (both are exact doubles so the operation is correctly rounded), otherwise Double.parseDouble is
+     * used once the syntax has been validated. NaN and Infinity are also accepted.
+     * <p>
+     * PLEASE NOTE: Unlike Double.parseDouble, hexadecimal values (e.g. 0x1p3) and leading or trailing whitespaces
+     * are not accepted. A NaN expression value is kept as a missing one (see ExpressionMatrix)
+     *
+     * @param str to be parsed into double
+     * @return the parsed value or Double.NaN if it is not a number
+     */
+    static double parseDouble(String str) {
+        int len = str.length();
+        int i = 0;
+        if (len == 0) return Double.NaN;
+
+        boolean negative = false;
+        char c = str.charAt(0);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        if (str.startsWith("Infinity", i) && i + 8 == len) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        for (; i < len && (c = str.charAt(i)) >= '0' && c <= '9'; i++, digits++) {
+            if (significantDigits > 0 || c != '0') {
+                if (++significantDigits <= 18) mantissa = 10 * mantissa + (c - '0');
+                else exponent++;
+            }
+        }
+        if (i < len && str.charAt(i) == '.') {
+            for (i++; i < len && (c = str.charAt(i)) >= '0' && c <= '9'; i++, digits++) {
+                if (significantDigits > 0 || c != '0') {
+                    if (++significantDigits <= 18) {
+                        mantissa = 10 * mantissa + (c - '0');
+                        exponent--;
+                    }
+                } else {
+                    exponent--;
+                }
+            }
+        }
+        if (digits == 0) return Double.NaN;
+
+        if (i < len && ((c = str.charAt(i)) == 'e' || c == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < len && ((c = str.charAt(i)) == '-' || c == '+')) {
+                negativeExp = c == '-';
+                i++;
+            }
+            int expDigits = 0;
+            int exp = 0;
+            for (; i < len && (c = str.charAt(i)) >= '0' && c <= '9'; i++, expDigits++) {
+                if (exp < 100000) exp = 10 * exp + (c - '0');
+            }
+            if (expDigits == 0) return Double.NaN;
+            exponent += negativeExp ? -exp : exp;
+        }
+        if (i < len && ((c = str.charAt(i)) == 'f' || c == 'F' || c == 'd' || c == 'D')) i++;
+        if (i != len) return Double.NaN;
+
+        double value;
+        if (mantissa == 0) {
+            value = 0.0;
+        } else if (significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            // Already validated, so it will not throw NumberFormatException
+            return Double.parseDouble(str);
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isNaN(String str) {
+        int offset = str.startsWith("-") || str.startsWith("+") ? 1 : 0;
+        return str.length() == offset + 3 && str.startsWith("NaN", offset);
+    }
+
+    /**
+     * Analyses the content lines once the header and the column threshold are known. The main one writes into the
+     * results of the parser while the ones used for the parallel parsing keep their own results to be merged later.
+     */
+    private class ContentParser {
+        private final Set<AnalysisIdentifier> identifiers;
+        private final List<String> warnings;
+        private final List<String> errors;
+        private Consumer<AnalysisIdentifier> consumer;
+
+        // The expression values of all the identifiers are kept here (each identifier refers to its row)
+        private ExpressionMatrix matrix;
+
+        // Start and end positions of the tokens found in the line being analysed
+        private int[] tokenOffsets = new int[64];
+
+        // Empty lines are only reported when followed by a line with content (trailing ones are ignored)
+        private boolean hasContent = false;
+        private int pendingEmptyLines = 0;
+        private int firstPendingEmptyLine = 0;
+
+        ContentParser(Set<AnalysisIdentifier> identifiers, List<String> warnings, List<String> errors) {
+            this.identifiers = identifiers;
+            this.warnings = warnings;
+            this.errors = errors;
+        }
+
+        /**
+         * Analyses the lines between from (starting a line) and to (just after a line break or the end of the input)
+         * splitting them by \\r?\\n as the LineReader does
+         */
+        void analyseLines(String input, int from, int to, int lineNumber) {
+            while (from < to) {
+                int end = input.indexOf('\n', from);
+                if (end < 0 || end >= to) end = to;
+                int lineEnd = end < to && end > from && input.charAt(end - 1) == '\r' ? end - 1 : end;
+                analyseLine(input.substring(from, lineEnd), lineNumber++);
+                from = end + 1;
+            }
+        }
+
+        /**
+         * Analyse one line of the data itself.
+         * Any character like space, comma, semicolon, tab is taken as a delimiter by the token scanner.
+         * <p>
+         * Empty lines at the end of the file are ignored, so their warning is only reported once a
+         * following line with content has been found.
+         *
+         * @param line       the line content
+         * @param lineNumber the position of the line in the file (starting in 1)
+         */
+        void analyseLine(String line, int lineNumber) {
+            if (line.isEmpty()) {
+                if (pendingEmptyLines++ == 0) firstPendingEmptyLine = lineNumber;
+                return;
+            }
+            hasContent = true;
+            flushPendingEmptyLines();
+
+            line = line.trim();
+            if (line.isEmpty()) {
+                warnings.add(Response.getMessage(Response.EMPTY_LINE, lineNumber));
+                return;
+            }
+
+            int tokens = scanTokens(line);
+            if (tokens > 0) {
+                // analyse if each line has the same amount of columns as the threshold based on first line, otherwise an error will be reported.
+                if (thresholdColumn == tokens) {
+                    String identifier = getToken(line, 0);
+                    if (tokens == 1) {
+                        addIdentifier(new AnalysisIdentifier(identifier));
+                        return;
+                    }
+                    // Values are written straight into a new row that is discarded if the line is invalid or duplicated
+                    if (matrix == null) matrix = new ExpressionMatrix(tokens - 1);
+                    int row = matrix.addRow();
+                    boolean validLine = true;
+                    for (int j = 1; j < tokens; j++) {
+                        String token = getToken(line, j).trim();
+                        double parsedValue = parseDouble(token);
+                        if (!Double.isNaN(parsedValue) || isNaN(token)) {
+                            matrix.set(row, j - 1, parsedValue);
+                        } else {
+                            warnings.add(Response.getMessage(Response.INLINE_PROBLEM, lineNumber, j + 1));
+                            validLine = false;
+                        }
+                    }
+                    if (!validLine || !addIdentifier(new AnalysisIdentifier(identifier, matrix, row))) {
+                        matrix.removeLastRow();
+                    }
+                } else {
+                    errors.add(Response.getMessage(Response.COLUMN_MISMATCH, lineNumber, thresholdColumn, tokens));
+                }
+            }
+        }
+
+        private void flushPendingEmptyLines() {
+            for (int i = 0; i < pendingEmptyLines; i++) {
+                warnings.add(Response.getMessage(Response.EMPTY_LINE, firstPendingEmptyLine + i));
+            }
+            pendingEmptyLines = 0;
+        }
+
+        boolean addIdentifier(AnalysisIdentifier identifier) {
+            if (!identifiers.add(identifier)) return false;
+            if (consumer != null) consumer.accept(identifier);
+            return true;
+        }
+
+        /**
+         * Appends the results of the chunk following the lines analysed so far. The identifiers already found
+         * are skipped and the expression values of the new ones are copied into this matrix.
+         * PLEASE NOTE: The chunk identifiers with expression values have the rows in the same order in its matrix
+         */
+        void merge(ContentParser chunk) {
+            if (chunk.hasContent) {
+                hasContent = true;
+                flushPendingEmptyLines();
+                warnings.addAll(chunk.warnings);
+                pendingEmptyLines = chunk.pendingEmptyLines;
+                firstPendingEmptyLine = chunk.firstPendingEmptyLine;
+            } else if (chunk.pendingEmptyLines > 0) {
+                if (pendingEmptyLines == 0) firstPendingEmptyLine = chunk.firstPendingEmptyLine;
+                pendingEmptyLines += chunk.pendingEmptyLines;
+            }
+            errors.addAll(chunk.errors);
+
+            int chunkRow = 0;
+            for (AnalysisIdentifier identifier : chunk.identifiers) {
+                if (chunk.matrix == null || identifier.getExpSize() == 0) {
+                    addIdentifier(identifier);
+                    continue;
+                }
+                if (matrix == null) matrix = new ExpressionMatrix(chunk.matrix.getColumns());
+                int row = matrix.addRow(chunk.matrix, chunkRow++);
+                if (!addIdentifier(new AnalysisIdentifier(identifier.getId(), matrix, row))) {
+                    matrix.removeLastRow();
+                }
+            }
+        }
+
+        void trim() {
+            if (matrix != null) matrix.trim();
+        }
+
+        /**
+         * Hand-written replacement of the content split regular expression [\\s,;]+ followed by a StringTokenizer.
+         * The start and end of every token are kept in tokenOffsets, so no intermediate Strings are created.
+         *
+         * @param line to be scanned
+         * @return the number of tokens found in the line
+         */
+        int scanTokens(String line) {
+            int tokens = 0;
+            int len = line.length();
+            int i = 0;
+            while (i < len) {
+                while (i < len && isDelimiter(line.charAt(i))) i++;
+                if (i == len) break;
+                int start = i;
+                while (i < len && !isDelimiter(line.charAt(i))) i++;
+                if (2 * tokens + 1 >= tokenOffsets.length) {
+                    tokenOffsets = Arrays.copyOf(tokenOffsets, tokenOffsets.length * 2);
+                }
+                tokenOffsets[2 * tokens] = start;
+                tokenOffsets[2 * tokens + 1] = i;
+                tokens++;
+            }
+            return tokens;
+        }
+
+        String getToken(String line, int token) {
+            return line.substring(tokenOffsets[2 * token], tokenOffsets[2 * token + 1]);
+        }
+    }
+
+    /**
+     * Reads the lines of the submitted data splitting them by \\r?\\n (as String.split("\\r?\\n") does)
+     */
+    private static class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder line = new StringBuilder();
+        private int pos = 0;
+        private int len = 0;
+        private int lineNumber = 0;
+        private int offset = 0;
+        private boolean eof = false;
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        String readLine() throws IOException {
+            if (eof) return null;
+            line.setLength(0);
+            while (true) {
+                if (pos == len) {
+                    len = reader.read(buffer, 0, buffer.length);
+                    pos = 0;
+                    if (len <= 0) {
+                        eof = true;
+                        len = 0;
+                        lineNumber++;
+                        return line.toString();
+                    }
+                }
+                int start = pos;
+                while (pos < len && buffer[pos] != '\n') pos++;
+                line.append(buffer, start, pos - start);
+                offset += pos - start;
+                if (pos < len) {
+                    pos++; // skipping '\n'
+                    offset++;
+                    int last = line.length() - 1;
+                    if (last >= 0 && line.charAt(last) == '\r') line.setLength(last);
+                    lineNumber++;
+                    return line.toString();
+                }
+            }
+        }
+
+        int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * @return the number of characters consumed by the lines read so far
+         */
+        int getOffset() {
+            return offset;
         }
-        return ret;
     }
 }
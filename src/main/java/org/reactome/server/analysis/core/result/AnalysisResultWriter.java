@@ -0,0 +1,230 @@
+package org.reactome.server.analysis.core.result;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.AnalysisReaction;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.identifier.Identifier;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.result.model.EntityStatistics;
+import org.reactome.server.analysis.core.result.model.IdentifierSummary;
+import org.reactome.server.analysis.core.result.model.PathwaySummary;
+import org.reactome.server.analysis.core.result.model.ReactionStatistics;
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the downloads of a result (pathways, mapping and not found identifiers) row by row while iterating the
+ * pathways, so no list with the whole content is built in memory whatever the size of the result is.
+ * <p>
+ * PLEASE NOTE: The writers are not closed (it is up to the caller) but they are flushed once the content is written
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public abstract class AnalysisResultWriter {
+
+    // Rows are not flushed one by one, the writer does it once all of them are written
+    private static final ObjectMapper mapper = new ObjectMapper().disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private static final String SEPARATOR = ",";
+    private static final String LIST_SEPARATOR = ";";
+
+    /**
+     * Writes the pathways in the requested order as CSV, one row per pathway with the statistics for the resource
+     */
+    public static void writePathwaysCSV(AnalysisStoredResult result, String sortBy, String order, String resource, boolean importableOnly, Writer out) throws IOException {
+        List<String> columnNames = getColumnNames(result);
+        out.write(String.join(SEPARATOR, "Pathway identifier", "Pathway name", "#Entities found", "#Entities total",
+                "#Interactors found", "#Interactors total", "Entities ratio", "Entities pValue", "Entities FDR",
+                "#Reactions found", "#Reactions total", "Reactions ratio"));
+        for (String columnName : columnNames) {
+            out.write(SEPARATOR);
+            out.write(csv(columnName));
+        }
+        out.write(SEPARATOR);
+        out.write(String.join(SEPARATOR, "Species identifier", "Species name", "Submitted entities found",
+                "Mapped entities", "Found reaction identifiers"));
+        out.write("\n");
+
+        boolean interactors = result.getSummary().isInteractors();
+        MainResource mr = ResourceFactory.getMainResource(resource);
+        for (PathwayNodeSummary pathway : result.getSortedPathways(sortBy, order, resource)) {
+            PathwaySummary summary = new PathwaySummary(pathway, resource.toUpperCase(), interactors, importableOnly);
+            EntityStatistics entities = summary.getEntities();
+            ReactionStatistics reactions = summary.getReactions();
+            if (entities == null) continue; //The pathway has nothing for the resource
+
+            StringBuilder row = new StringBuilder();
+            row.append(pathway.getStId()).append(SEPARATOR)
+                    .append(csv(pathway.getName())).append(SEPARATOR)
+                    .append(value(entities.getFound())).append(SEPARATOR)
+                    .append(value(entities.getTotal())).append(SEPARATOR)
+                    .append(value(entities.getInteractorsFound())).append(SEPARATOR)
+                    .append(value(entities.getInteractorsTotal())).append(SEPARATOR)
+                    .append(value(entities.getRatio())).append(SEPARATOR)
+                    .append(value(entities.getpValue())).append(SEPARATOR)
+                    .append(value(entities.getFdr())).append(SEPARATOR)
+                    .append(value(reactions.getFound())).append(SEPARATOR)
+                    .append(value(reactions.getTotal())).append(SEPARATOR)
+                    .append(value(reactions.getRatio()));
+            List<Double> exp = entities.getExp();
+            for (int i = 0; i < columnNames.size(); i++) {
+                row.append(SEPARATOR).append(exp != null && i < exp.size() ? value(exp.get(i)) : "");
+            }
+            row.append(SEPARATOR).append(pathway.getSpecies().getSpeciesID())
+                    .append(SEPARATOR).append(csv(pathway.getSpecies().getName()));
+
+            Set<String> submitted = new TreeSet<>();
+            Set<String> mapped = new TreeSet<>();
+            MapSet<Identifier, MainIdentifier> identifierMap = pathway.getData().getIdentifierMap();
+            for (Identifier identifier : identifierMap.keySet()) {
+                for (MainIdentifier mainIdentifier : identifierMap.getElements(identifier)) {
+                    if (accept(mainIdentifier.getResource(), mr, importableOnly)) {
+                        submitted.add(identifier.getValue().getId());
+                        mapped.add(mainIdentifier.getValue().getId());
+                    }
+                }
+            }
+            row.append(SEPARATOR).append(csv(String.join(LIST_SEPARATOR, submitted)))
+                    .append(SEPARATOR).append(csv(String.join(LIST_SEPARATOR, mapped)))
+                    .append(SEPARATOR).append(csv(getReactions(pathway.getData(), mr, importableOnly)))
+                    .append("\n");
+            out.write(row.toString());
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the pathways in the requested order as a JSON array of the same objects returned by getResultSummary
+     */
+    public static void writePathwaysJSON(AnalysisStoredResult result, String sortBy, String order, String resource, boolean importableOnly, OutputStream out) throws IOException {
+        boolean interactors = result.getSummary().isInteractors();
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+        for (PathwayNodeSummary pathway : result.getSortedPathways(sortBy, order, resource)) {
+            mapper.writeValue(generator, new PathwaySummary(pathway, resource.toUpperCase(), interactors, importableOnly));
+        }
+        generator.writeEndArray();
+        generator.close();
+        out.flush();
+    }
+
+    /**
+     * Writes one row per submitted identifier and identifier it has been mapped to for the resource ("TOTAL" for all).
+     * The mapping is taken from the details of one pathway at a time (see PathwayNodeData.getDetails) instead of the
+     * found entities map of the result, so it is neither built for all the pathways nor kept with the result.
+     * <p>
+     * PLEASE NOTE: A submitted identifier is found in several pathways (at least in the ones containing the pathways
+     * where it is), so the rows already written are tracked to write each one only once
+     */
+    public static void writeMappingCSV(AnalysisStoredResult result, String resource, Writer out) throws IOException {
+        MainResource mr = ResourceFactory.getMainResource(resource);
+        out.write(String.join(SEPARATOR, "Submitted identifier", "Found identifier", "Resource"));
+        out.write("\n");
+        MapSet<Identifier, MainIdentifier> written = new MapSet<>();
+        for (PathwayNodeSummary pathway : result.getPathways()) {
+            MapSet<Identifier, MainIdentifier> identifierMap = pathway.getData().getDetails().getEntities();
+            for (Identifier identifier : identifierMap.keySet()) {
+                String submitted = null;
+                for (MainIdentifier mainIdentifier : identifierMap.getElements(identifier)) {
+                    if (!accept(mainIdentifier.getResource(), mr, false) || !written.add(identifier, mainIdentifier)) continue;
+                    if (submitted == null) submitted = csv(identifier.getValue().getId());
+                    out.write(submitted + SEPARATOR + csv(mainIdentifier.getValue().getId()) + SEPARATOR + mainIdentifier.getResource().getName() + "\n");
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the identifiers that have not been found with their expression values
+     */
+    public static void writeNotFoundCSV(AnalysisStoredResult result, Writer out) throws IOException {
+        List<String> columnNames = getColumnNames(result);
+        out.write("Not found");
+        for (String columnName : columnNames) {
+            out.write(SEPARATOR);
+            out.write(csv(columnName));
+        }
+        out.write("\n");
+        Collection<AnalysisIdentifier> notFound = result.getNotFound();
+        if (notFound != null) {
+            for (AnalysisIdentifier identifier : notFound) {
+                StringBuilder row = new StringBuilder(csv(identifier.getId()));
+                for (int i = 0; i < columnNames.size(); i++) {
+                    row.append(SEPARATOR).append(i < identifier.getExpSize() ? value(identifier.getExpValue(i)) : "");
+                }
+                out.write(row.append("\n").toString());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the identifiers that have not been found as a JSON array of the same objects returned by getNotFoundIdentifiers
+     */
+    public static void writeNotFoundJSON(AnalysisStoredResult result, OutputStream out) throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+        if (result.getNotFound() != null) {
+            for (AnalysisIdentifier identifier : result.getNotFound()) {
+                mapper.writeValue(generator, new IdentifierSummary(identifier));
+            }
+        }
+        generator.writeEndArray();
+        generator.close();
+        out.flush();
+    }
+
+    private static List<String> getColumnNames(AnalysisStoredResult result) {
+        if (result.getExpressionSummary() == null || result.getExpressionSummary().getColumnNames() == null) {
+            return List.of();
+        }
+        return result.getExpressionSummary().getColumnNames();
+    }
+
+    private static String getReactions(PathwayNodeData data, MainResource mr, boolean importableOnly) {
+        Set<AnalysisReaction> reactions = mr == null ? data.getReactions(importableOnly) : data.getReactions(mr);
+        Set<String> rtn = new TreeSet<>();
+        for (AnalysisReaction reaction : reactions) {
+            rtn.add(reaction.getStId() != null ? reaction.getStId() : String.valueOf(reaction.getDbId()));
+        }
+        return String.join(LIST_SEPARATOR, rtn);
+    }
+
+    private static boolean accept(MainResource resource, MainResource mr, boolean importableOnly) {
+        return mr == null ? !importableOnly || !resource.isAuxMainResource() : resource.equals(mr);
+    }
+
+    private static String value(Object value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static String value(double value) {
+        return Double.isNaN(value) ? "" : String.valueOf(value);
+    }
+
+    /**
+     * Quotes the field when it contains a separator, a quote or a line break
+     */
+    private static String csv(String field) {
+        if (field == null) return "";
+        if (field.contains(SEPARATOR) || field.contains("\"") || field.contains("\n") || field.contains("\r")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+}
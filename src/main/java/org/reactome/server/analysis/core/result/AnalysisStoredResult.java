@@ -17,6 +17,10 @@ import org.reactome.server.graph.domain.model.Species;
 import java.util.*;
 
 /**
+ * The list of pathways is never modified once the result has been created. Filtering returns a new result (view)
+ * sharing that list and keeping the positions of the selected pathways, and sorting is done on copies, so the
+ * same result can be used by concurrent requests.
+ *
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
  */
 public class AnalysisStoredResult {
@@ -24,6 +28,12 @@ public class AnalysisStoredResult {
 
     private AnalysisSummary summary;
     private List<PathwayNodeSummary> pathways;
+    // Positions in pathways of the ones passing the filters applied (null when it has not been filtered)
+    private transient int[] selection;
+    // Built on demand and shared with the views created from this result
+    private transient PathwaysIndex index;
+    // Found entities of the selected pathways (for results that have not been filtered it is kept in the index)
+    private transient FoundEntitiesMap foundEntitiesMap;
     private Set<AnalysisIdentifier> notFound;
     private ExpressionSummary expressionSummary;
     private List<ResourceSummary> resourceSummary = new ArrayList<>();
@@ -33,10 +43,25 @@ public class AnalysisStoredResult {
     public AnalysisStoredResult(UserData userData, HierarchiesData data) {
         this.warnings = userData.getWarningMessages();
         this.notFound = data.getNotFound();
-        this.pathways = new LinkedList<>();
+        this.pathways = new ArrayList<>();
         this.expressionSummary = new ExpressionSummary(userData);
     }
 
+    /**
+     * Creates a copy sharing the pathways (they are never modified) but with its own summaries
+     */
+    public AnalysisStoredResult(AnalysisStoredResult result) {
+        this.summary = result.summary == null ? null : new AnalysisSummary(result.summary);
+        this.pathways = result.pathways;
+        this.selection = result.selection;
+        this.index = result.getIndex();
+        this.notFound = result.notFound;
+        this.expressionSummary = result.expressionSummary;
+        result.resourceSummary.forEach(rs -> this.resourceSummary.add(new ResourceSummary(rs)));
+        result.speciesSummary.forEach(ss -> this.speciesSummary.add(new SpeciesSummary(ss)));
+        this.warnings = result.warnings;
+    }
+
     public AnalysisStoredResult(String token, ExternalAnalysisResult result) {
         this.summary = new AnalysisSummary(token, result.getSummary());
         this.expressionSummary = new ExpressionSummary(result.getExpressionSummary());
@@ -119,11 +144,11 @@ public class AnalysisStoredResult {
     }
 
     public FoundElements getFoundElmentsForPathway(String pathway, String resource) {
-        PathwayNodeSummary aux = getPathway(pathway);
-        if (aux != null) {
+        int position = getPosition(pathway);
+        if (position >= 0) {
             List<String> columnNames = getExpressionSummary().getColumnNames();
-            FoundEntities identifiers = (new FoundEntities(aux, columnNames)).filter(resource);
-            FoundInteractors interactors = (new FoundInteractors(aux, columnNames)).filter(resource);
+            FoundEntities identifiers = getIndex().getFoundEntities(position, columnNames).filter(resource);
+            FoundInteractors interactors = getIndex().getFoundInteractors(position, columnNames).filter(resource);
             if (identifiers != null) {
                 return new FoundElements(pathway, identifiers, interactors, columnNames);
             }
@@ -134,11 +159,11 @@ public class AnalysisStoredResult {
     public List<FoundElements> getFoundElmentsForPathways(List<String> pathways, String resource) {
         List<FoundElements> rtn = new ArrayList<>();
         for (String pathway : pathways) {
-            PathwayNodeSummary aux = getPathway(pathway);
-            if (aux != null) {
+            int position = getPosition(pathway);
+            if (position >= 0) {
                 List<String> columnNames = getExpressionSummary().getColumnNames();
-                FoundEntities identifiers = (new FoundEntities(aux, columnNames)).filter(resource);
-                FoundInteractors interactors = (new FoundInteractors(aux, columnNames)).filter(resource);
+                FoundEntities identifiers = getIndex().getFoundEntities(position, columnNames).filter(resource);
+                FoundInteractors interactors = getIndex().getFoundInteractors(position, columnNames).filter(resource);
                 if (identifiers != null) {
                     rtn.add(new FoundElements(pathway, identifiers, interactors, columnNames));
                 }
@@ -149,53 +174,44 @@ public class AnalysisStoredResult {
 
     public FoundEntities getFoundEntities(String pathway, String resource) {
         FoundEntities pi = null;
-        PathwayNodeSummary aux = getPathway(pathway);
-        if (aux != null) {
+        int position = getPosition(pathway);
+        if (position >= 0) {
             List<String> columnNames = getExpressionSummary().getColumnNames();
-            pi = (new FoundEntities(aux, columnNames)).filter(resource);
+            pi = getIndex().getFoundEntities(position, columnNames).filter(resource);
         }
         return pi;
     }
 
     public FoundInteractors getFoundInteractors(String pathway) {
         FoundInteractors pi = null;
-        PathwayNodeSummary aux = getPathway(pathway);
-        if (aux != null) {
+        int position = getPosition(pathway);
+        if (position >= 0) {
             List<String> columnNames = getExpressionSummary().getColumnNames();
-            pi = new FoundInteractors(aux, columnNames);
+            pi = getIndex().getFoundInteractors(position, columnNames);
         }
         return pi;
     }
 
+    /**
+     * PLEASE NOTE: The returned set is shared, so it is read only
+     */
     public Set<AnalysisIdentifier> getAnalysisIdentifiers() {
-        Set<AnalysisIdentifier> rtn = new HashSet<>();
-        for (Identifier identifier : getFoundEntitiesMap().keySet()) {
-            rtn.add(identifier.getValue());
-        }
-        return rtn;
+        return getFoundEntitiesIndex().getAnalysisIdentifiers();
     }
 
+    /**
+     * PLEASE NOTE: The returned map is shared, so it must not be modified
+     */
     @JsonIgnore
     public MapSet<Identifier, MainIdentifier> getFoundEntitiesMap() {
-        MapSet<Identifier, MainIdentifier> rtn = new MapSet<Identifier, MainIdentifier>();
-        for (PathwayNodeSummary pathway : this.pathways) {
-            rtn.addAll(pathway.getData().getIdentifierMap());
-        }
-        return rtn;
+        return getFoundEntitiesIndex().getAll();
     }
 
+    /**
+     * PLEASE NOTE: The returned map is shared, so it must not be modified
+     */
     public MapSet<Identifier, MainIdentifier> getFoundEntitiesMap(MainResource mainResource) {
-        MapSet<Identifier, MainIdentifier> rtn = new MapSet<>();
-
-        MapSet<Identifier, MainIdentifier> aux = getFoundEntitiesMap();
-        for (Identifier identifier : aux.keySet()) {
-            for (MainIdentifier mainIdentifier : aux.getElements(identifier)) {
-                if (mainIdentifier.getResource().equals(mainResource)) {
-                    rtn.add(identifier, mainIdentifier);
-                }
-            }
-        }
-        return rtn;
+        return getFoundEntitiesIndex().getByResource(mainResource);
     }
 
     public Set<Long> getFoundReactions(String pathwayId, String resource, boolean importableOnly) {
@@ -205,22 +221,18 @@ public class AnalysisStoredResult {
     public Set<Long> getFoundReactions(List<String> pathwayIds, String resource, boolean importableOnly) {
         Set<Long> rtn = new HashSet<>();
         if (resource.toUpperCase().equals("TOTAL")) {
-            for (PathwayNodeSummary pathway : this.pathways) {
-                if (pathway.in(pathwayIds)) {
-                    for (AnalysisReaction reaction : pathway.getData().getReactions(importableOnly)) {
-                        rtn.add(reaction.getDbId());
-                    }
+            for (int position : getPositions(pathwayIds)) {
+                for (AnalysisReaction reaction : pathways.get(position).getData().getReactions(importableOnly)) {
+                    rtn.add(reaction.getDbId());
                 }
             }
         } else {
             Resource r = ResourceFactory.getResource(resource);
             if (r instanceof MainResource) {
                 MainResource mainResource = (MainResource) r;
-                for (PathwayNodeSummary pathway : this.pathways) {
-                    if (pathway.in(pathwayIds)) {
-                        for (AnalysisReaction reaction : pathway.getData().getReactions(mainResource)) {
-                            rtn.add(reaction.getDbId());
-                        }
+                for (int position : getPositions(pathwayIds)) {
+                    for (AnalysisReaction reaction : pathways.get(position).getData().getReactions(mainResource)) {
+                        rtn.add(reaction.getDbId());
                     }
                 }
             }
@@ -271,28 +283,136 @@ public class AnalysisStoredResult {
     }
 
     public PathwayNodeSummary getPathway(String identifier) {
-        for (PathwayNodeSummary nodeSummary : this.pathways) {
-            if (nodeSummary.is(identifier)) {
-                return nodeSummary;
-            }
-        }
-        return null;
+        int position = getPosition(identifier);
+        return position >= 0 ? pathways.get(position) : null;
     }
 
+    /**
+     * @return read only list of the pathways passing the filters applied (all of them when it has not been filtered)
+     */
     public List<PathwayNodeSummary> getPathways() {
-        return pathways;
+        return selection == null ? Collections.unmodifiableList(pathways) : new PathwaysView(pathways, selection);
+    }
+
+    /**
+     * Creates a copy where the pathways only keep their statistics (see PathwayNodeData.getStatistics) and load their
+     * details from this result when they are needed. The filter applied (if any) is not kept.
+     * <p>
+     * PLEASE NOTE: The not found identifiers are copied keeping only their own expression values, so the copy does not
+     * hold the whole matrix submitted by the user (see ExpressionMatrix.Compaction)
+     */
+    @JsonIgnore
+    public AnalysisStoredResult getStatistics() {
+        AnalysisStoredResult rtn = new AnalysisStoredResult(this);
+        rtn.selection = null;
+        rtn.index = null;
+        if (notFound != null) {
+            ExpressionMatrix.Compaction compaction = new ExpressionMatrix.Compaction();
+            rtn.notFound = new HashSet<>(notFound.size() * 4 / 3 + 1);
+            for (AnalysisIdentifier identifier : notFound) rtn.notFound.add(compaction.copy(identifier));
+            compaction.trim();
+        }
+        rtn.pathways = new ArrayList<>(pathways.size());
+        for (PathwayNodeSummary pathway : pathways) {
+            PathwayNodeData data = pathway.getData().getStatistics();
+            data.setDetailsLoader(pathway.getData()::getDetails);
+            rtn.pathways.add(new PathwayNodeSummary(pathway, data));
+        }
+        return rtn;
+    }
+
+    /**
+     * Used to iterate the pathways in a given order without creating the summaries for all of them up front
+     *
+     * @return read only list of the pathways passing the filters applied in the requested order
+     */
+    List<PathwayNodeSummary> getSortedPathways(String sortBy, String order, String resource) {
+        return new PathwaysView(pathways, getSortedPositions(sortBy, order, resource));
+    }
+
+    private synchronized PathwaysIndex getIndex() {
+        if (index == null) index = new PathwaysIndex(pathways);
+        return index;
+    }
+
+    private synchronized FoundEntitiesMap getFoundEntitiesIndex() {
+        if (selection == null) return getIndex().getFoundEntitiesMap();
+        if (foundEntitiesMap == null) foundEntitiesMap = new FoundEntitiesMap(getPathways());
+        return foundEntitiesMap;
+    }
+
+    /**
+     * The sorted positions of all the pathways are calculated once per order and kept in the index, so for a
+     * result that has not been filtered they are returned straight away (the array must not be modified)
+     *
+     * @return the positions in pathways of the ones passing the filters applied in the requested order
+     */
+    private int[] getSortedPositions(String sortBy, String order, String resource) {
+        return select(getIndex().getSortedPositions(sortBy, order, resource).getPositions());
+    }
+
+    /**
+     * @return the given positions (keeping their order) of the pathways passing the filters applied
+     */
+    private int[] select(int[] positions) {
+        if (selection == null) return positions;
+
+        boolean[] selected = new boolean[pathways.size()];
+        for (int position : selection) selected[position] = true;
+        int[] rtn = new int[Math.min(selection.length, positions.length)];
+        int n = 0;
+        for (int position : positions) {
+            if (selected[position]) rtn[n++] = position;
+        }
+        return n == rtn.length ? rtn : Arrays.copyOf(rtn, n);
+    }
+
+    /**
+     * @return the position in pathways of the one passing the filters applied with the given identifier or -1
+     */
+    private int getPosition(String pathwayId) {
+        int position = getIndex().getPosition(pathwayId);
+        if (position < 0 || selection == null) return position;
+        // The selection keeps the positions in ascending order
+        return Arrays.binarySearch(selection, position) >= 0 ? position : -1;
+    }
+
+    /**
+     * @return the positions (ascending and without repetitions) of the pathways passing the filters applied
+     * with any of the given identifiers
+     */
+    private int[] getPositions(Collection<String> pathwayIds) {
+        int[] rtn = new int[pathwayIds.size()];
+        int n = 0;
+        for (String pathwayId : pathwayIds) {
+            int position = getPosition(pathwayId);
+            if (position >= 0) rtn[n++] = position;
+        }
+        rtn = Arrays.copyOf(rtn, n);
+        Arrays.sort(rtn);
+        int unique = 0;
+        for (int i = 0; i < rtn.length; i++) {
+            if (i == 0 || rtn[i] != rtn[i - 1]) rtn[unique++] = rtn[i];
+        }
+        return Arrays.copyOf(rtn, unique);
     }
 
     public int getPage(String pathwayId, String sortBy, String order, String resource, Integer pageSize) {
-        Collections.sort(this.pathways, getComparator(sortBy, order, resource));
         if (pageSize == null) pageSize = PAGE_SIZE;
-        for (int i = 0; i < this.pathways.size(); i++) {
-            PathwayNodeSummary pathway = this.pathways.get(i);
-            if (pathway.is(pathwayId)) {
-                return ((int) Math.floor(i / pageSize)) + 1;
+        int position = getPosition(pathwayId);
+        if (position < 0) return -1;
+
+        PathwaysIndex.SortedPositions sorted = getIndex().getSortedPositions(sortBy, order, resource);
+        int rank = sorted.getRank(position);
+        if (selection != null) {
+            // The rank among the selected ones is the number of them ranked before it
+            int aux = 0;
+            for (int p : selection) {
+                if (sorted.getRank(p) < rank) aux++;
             }
+            rank = aux;
         }
-        return -1;
+        return (rank / pageSize) + 1;
     }
 
     public List<ResourceSummary> getResourceSummary() {
@@ -315,57 +435,39 @@ public class AnalysisStoredResult {
         return filterPathways(null, resource, pValue, includeDisease, min, max, importableOnly);
     }
 
+    /**
+     * The result is not modified, a new one (view) sharing the pathways is returned instead
+     *
+     * @return a new result containing only the pathways passing the filter
+     */
     public AnalysisStoredResult filterPathways(List<Species> species, String resource, Double pValue, boolean includeDisease, Integer min, Integer max, boolean importableOnly) {
-        final boolean includeInteractors = summary.isInteractors();
-        MainResource mr = ResourceFactory.getMainResource(resource);
-        List<PathwayNodeSummary> pathways = new LinkedList<>();
+        PathwaysFacets.Selection selected = getFacets(species, resource, pValue, includeDisease, importableOnly).getSelection(min, max);
 
-        int resourceTotal = 0;
         Map<String, Integer> resourceHits = new HashMap<>();
         this.resourceSummary.stream()
                 .filter(rs -> rs.getPathways() > 0 && !rs.getResource().equals("TOTAL"))
                 .forEach(rs -> resourceHits.put(rs.getResource(), 0));
+        resourceHits.putAll(selected.getResourceHits());
         Map<SpeciesNode, Integer> speciesHits = new HashMap<>();
         //if(species==null || species.isEmpty())
         this.getSpeciesSummary().forEach(s -> speciesHits.put(s.getSpeciesNode(), 0));
+        speciesHits.putAll(selected.getSpeciesHits());
 
-        for (PathwayNodeSummary pathway : this.pathways) {
-            if (!includeDisease && pathway.isInDisease()) continue;
-            PathwayNodeData data = pathway.getData();
-
-            Double pwypValue = (mr == null) ? data.getEntitiesPValue(importableOnly) : data.getEntitiesPValue(mr);
-            if (pwypValue == null) continue;
-
-            boolean toAdd = pValue == null || pwypValue <= pValue;
-            final int found = (mr == null) ?
-                    data.getEntitiesFound(importableOnly) + data.getInteractorsFound(importableOnly) :
-                    data.getEntitiesFound(mr) + data.getInteractorsFound(mr);
-            toAdd &= found > 0;
-            final int size = (mr == null) ?
-                    data.getEntitiesCount(importableOnly) + (includeInteractors ? data.getInteractorsCount(importableOnly) : 0) :
-                    data.getEntitiesCount(mr) + (includeInteractors ? data.getInteractorsCount(mr) : 0);
-            toAdd &= (min == null || max == null) ? size > 0 : min <= size && max >= size;
-            toAdd &= species == null || species.isEmpty() || pathway.getSpecies().isIn(species);
-            if (toAdd) {
-                pathways.add(pathway);
-                resourceTotal += 1;
-                for (MainResource r : data.getResources()) {
-                    if ((!importableOnly || !r.isAuxMainResource()) && data.getEntitiesPValue(r) != null) {
-                        resourceHits.put(r.getName(), resourceHits.getOrDefault(r.getName(), 0) + 1);
-                    }
-                }
-                SpeciesNode speciesNode = pathway.getSpecies();
-                speciesHits.put(speciesNode, 1 + speciesHits.getOrDefault(speciesNode, 0));
-            }
-        }
-        this.pathways = pathways;
-        setResourceSummaryFiltered(resourceHits, resourceTotal);
-        setSpeciesSummaryFiltered(speciesHits);
-        return this;
+        AnalysisStoredResult rtn = new AnalysisStoredResult(this);
+        rtn.selection = selected.getPositions();
+        rtn.setResourceSummaryFiltered(resourceHits, selected.getTotal());
+        rtn.setSpeciesSummaryFiltered(speciesHits);
+        return rtn;
     }
 
+    /**
+     * The result is not modified, a new one (view) sharing the pathways is returned instead
+     *
+     * @return a new result containing only the pathways passing the filter
+     */
     public AnalysisStoredResult filterPathwaysImportableOnly(boolean importableOnly) {
-        List<PathwayNodeSummary> pathways = new LinkedList<>();
+        int[] selected = new int[size()];
+        int n = 0;
 
         int resourceTotal = 0;
         Map<String, Integer> resourceHits = new HashMap<>();
@@ -373,12 +475,13 @@ public class AnalysisStoredResult {
                 .filter(rs -> rs.getPathways() > 0 && !rs.getResource().equals("TOTAL"))
                 .forEach(rs -> resourceHits.put(rs.getResource(), 0));
 
-        for (PathwayNodeSummary pathway : this.pathways) {
-            PathwayNodeData data = pathway.getData();
+        for (int i = 0; i < selected.length; i++) {
+            int position = position(i);
+            PathwayNodeData data = this.pathways.get(position).getData();
 
             if (data.getResources().stream().allMatch(MainResource::isAuxMainResource)) continue;
 
-            pathways.add(pathway);
+            selected[n++] = position;
             resourceTotal += 1;
             for (MainResource r : data.getResources()) {
                 if (!r.isAuxMainResource() && data.getEntitiesPValue(r) != null) {
@@ -386,9 +489,21 @@ public class AnalysisStoredResult {
                 }
             }
         }
-        this.pathways = pathways;
-        setResourceSummaryFiltered(resourceHits, resourceTotal);
-        return this;
+        AnalysisStoredResult rtn = new AnalysisStoredResult(this);
+        rtn.selection = Arrays.copyOf(selected, n);
+        rtn.setResourceSummaryFiltered(resourceHits, resourceTotal);
+        return rtn;
+    }
+
+    private int size() {
+        return selection == null ? pathways.size() : selection.length;
+    }
+
+    /**
+     * @return the position in pathways of the i-th pathway passing the filters applied
+     */
+    private int position(int i) {
+        return selection == null ? i : selection[i];
     }
 
     private void setSpeciesSummaryFiltered(Map<SpeciesNode, Integer> speciesHits) {
@@ -407,18 +522,18 @@ public class AnalysisStoredResult {
 
     public AnalysisResult getResultSummary(String sortBy, String order, String resource, Integer pageSize, Integer page, boolean importableOnly) {
 //        this.filterPathways(species, resource, pValue, includeDisease,  min, max);
-        Collections.sort(this.pathways, getComparator(sortBy, order, resource));
+        int[] positions = getSortedPositions(sortBy, order, resource);
         if (pageSize == null) pageSize = PAGE_SIZE;
         List<PathwaySummary> rtn = new LinkedList<>();
-        if (page != null && page > 0) { // && this.pathways.size()>(pageSize*(page-1))){
-            int end = (pageSize * page) > this.pathways.size() ? this.pathways.size() : (pageSize * page);
+        if (page != null && page > 0) { // && positions.length>(pageSize*(page-1))){
+            int end = (pageSize * page) > positions.length ? positions.length : (pageSize * page);
             for (int i = pageSize * (page - 1); i < end; ++i) {
-                PathwayNodeSummary pathwayNodeSummary = this.pathways.get(i);
+                PathwayNodeSummary pathwayNodeSummary = pathways.get(positions[i]);
                 rtn.add(new PathwaySummary(pathwayNodeSummary, resource.toUpperCase(), summary.isInteractors(), importableOnly));
             }
         } else {
-            for (PathwayNodeSummary pathway : this.pathways) {
-                rtn.add(new PathwaySummary(pathway, resource.toUpperCase(), summary.isInteractors(), importableOnly));
+            for (int position : positions) {
+                rtn.add(new PathwaySummary(pathways.get(position), resource.toUpperCase(), summary.isInteractors(), importableOnly));
             }
         }
         return new AnalysisResult(this, rtn);
@@ -433,11 +548,44 @@ public class AnalysisStoredResult {
     }
 
     public List<PathwaySummary> filterByPathways(List<String> pathwayIds, String resource, boolean importableOnly) {
-        this.filterPathways(resource, importableOnly);
+        AnalysisStoredResult filtered = this.filterPathways(resource, importableOnly);
         List<PathwaySummary> rtn = new LinkedList<>();
-        for (PathwayNodeSummary pathway : this.pathways) {
-            if (pathway.in(pathwayIds)) {
-                rtn.add(new PathwaySummary(pathway, resource.toUpperCase(), summary.isInteractors(), importableOnly));
+        for (int position : filtered.getPositions(pathwayIds)) {
+            rtn.add(new PathwaySummary(pathways.get(position), resource.toUpperCase(), summary.isInteractors(), importableOnly));
+        }
+        return rtn;
+    }
+
+    /**
+     * Compares the pathways of this result with the ones of the given result. Both are merged in one pass over their
+     * pathways sorted by dbId (the order is kept in the index of each result), so nothing else is sorted or looked up.
+     *
+     * @param resource "TOTAL" or the name of a main resource
+     * @return the differences for every pathway (passing the filters applied) in any of the results, sorted by dbId
+     */
+    public List<PathwayDelta> compare(AnalysisStoredResult other, String resource, boolean importableOnly) {
+        resource = resource == null ? "TOTAL" : resource.toUpperCase();
+        int[] from = select(getIndex().getPositionsByDbId());
+        int[] to = other.select(other.getIndex().getPositionsByDbId());
+        boolean fromInteractors = summary != null && summary.isInteractors();
+        boolean toInteractors = other.summary != null && other.summary.isInteractors();
+
+        List<PathwayDelta> rtn = new ArrayList<>(Math.max(from.length, to.length));
+        int i = 0, j = 0;
+        while (i < from.length || j < to.length) {
+            PathwayNodeSummary a = i < from.length ? pathways.get(from[i]) : null;
+            PathwayNodeSummary b = j < to.length ? other.pathways.get(to[j]) : null;
+            int cmp = a == null ? 1 : b == null ? -1 : a.getPathwayId().compareTo(b.getPathwayId());
+            if (cmp < 0) {
+                rtn.add(new PathwayDelta(a, fromInteractors, null, toInteractors, resource, importableOnly));
+                i++;
+            } else if (cmp > 0) {
+                rtn.add(new PathwayDelta(null, fromInteractors, b, toInteractors, resource, importableOnly));
+                j++;
+            } else {
+                rtn.add(new PathwayDelta(a, fromInteractors, b, toInteractors, resource, importableOnly));
+                i++;
+                j++;
             }
         }
         return rtn;
@@ -451,12 +599,12 @@ public class AnalysisStoredResult {
         if (resource != null) {
             Resource r = ResourceFactory.getResource(resource);
 
-            this.filterPathways(resource, importableOnly);
-            Collections.sort(this.pathways, getComparator(sortBy, order, resource));
+            AnalysisStoredResult filtered = this.filterPathways(resource, importableOnly);
             List<PathwayBase> rtn = new LinkedList<>();
             Double min = null, max = null;
 
-            for (PathwayNodeSummary pathway : this.pathways) {
+            for (int position : filtered.getSortedPositions(sortBy, order, resource)) {
+                PathwayNodeSummary pathway = pathways.get(position);
                 if (pathway.getSpecies().getSpeciesID().equals(speciesId)) {
                     PathwaySummary aux = new PathwaySummary(pathway, resource.toUpperCase(), summary.isInteractors(), importableOnly);
                     rtn.add(new PathwayBase(aux));
@@ -489,49 +637,36 @@ public class AnalysisStoredResult {
     }
 
     public List<Bin> getBinnedPathwaySize(int binSize, String resource, List<Species> speciesList, double pValue, boolean includeDisease) {
+        return getFacets(speciesList, resource, pValue, includeDisease, false).getBins(binSize);
+    }
+
+    /**
+     * For a result that has not been filtered the facets are kept in the index, so the same filter is calculated once
+     */
+    private PathwaysFacets getFacets(List<Species> species, String resource, Double pValue, boolean includeDisease, boolean importableOnly) {
         final boolean includeInteractors = summary.isInteractors();
-        final MainResource mr = ResourceFactory.getMainResource(resource);
-        MapSet<Integer, Long> sizeMap = new MapSet<>();
-        speciesList = speciesList == null ? new ArrayList<>() : speciesList;
+        return selection == null ?
+                getIndex().getFacets(includeInteractors, species, resource, pValue, includeDisease, importableOnly) :
+                new PathwaysFacets(pathways, selection, includeInteractors, species, resource, pValue, includeDisease, importableOnly);
+    }
 
-        for (PathwayNodeSummary pathway : pathways) {
-            if (!includeDisease && pathway.isInDisease()) continue;
-            if (speciesList.isEmpty() || pathway.getSpecies().isIn(speciesList)) {
-                final PathwayNodeData data = pathway.getData();
-                final Double pv = (mr == null) ? data.getEntitiesPValue() : data.getEntitiesPValue(mr);
-                if (pv != null && pv <= pValue) {
-                    final int size = (mr == null) ?
-                            data.getEntitiesCount() + (includeInteractors ? data.getInteractorsCount() : 0) :
-                            data.getEntitiesCount(mr) + (includeInteractors ? data.getInteractorsCount(mr) : 0);
-                    sizeMap.add(size / binSize, pathway.getPathwayId());
-                }
-            }
-        }
-        List<Bin> rtn = new ArrayList<>();
-        for (Integer key : sizeMap.keySet()) {
-            int value = sizeMap.getElements(key).size();
-            rtn.add(new Bin(key, value));
+    private static class PathwaysView extends AbstractList<PathwayNodeSummary> implements RandomAccess {
+        private final List<PathwayNodeSummary> pathways;
+        private final int[] selection;
+
+        PathwaysView(List<PathwayNodeSummary> pathways, int[] selection) {
+            this.pathways = pathways;
+            this.selection = selection;
         }
-        return rtn;
-    }
 
-    private Comparator<PathwayNodeSummary> getComparator(String sortBy, String order, String resource) {
-        AnalysisSortType sortType = AnalysisSortType.getSortType(sortBy);
-        if (resource != null) {
-            Resource r = ResourceFactory.getResource(resource);
-            if (r instanceof MainResource) {
-                MainResource mr = (MainResource) r;
-                if (order != null && order.toUpperCase().equals("DESC")) {
-                    return Collections.reverseOrder(ComparatorFactory.getComparator(sortType, mr));
-                } else {
-                    return ComparatorFactory.getComparator(sortType, mr);
-                }
-            }
+        @Override
+        public PathwayNodeSummary get(int index) {
+            return pathways.get(selection[index]);
         }
-        if (order != null && order.toUpperCase().equals("DESC")) {
-            return Collections.reverseOrder(ComparatorFactory.getComparator(sortType));
-        } else {
-            return ComparatorFactory.getComparator(sortType);
+
+        @Override
+        public int size() {
+            return selection.length;
         }
     }
 }
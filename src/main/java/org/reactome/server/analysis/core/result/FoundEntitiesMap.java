@@ -0,0 +1,56 @@
+package org.reactome.server.analysis.core.result;
+
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.identifier.Identifier;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.util.*;
+
+/**
+ * Submitted identifiers mapped to the main identifiers found for them in a list of pathways, partitioned per main
+ * resource as well. It is calculated walking the pathways a single time and then kept with the result, only softly
+ * referenced (see PathwaysIndex), so it is calculated again if the memory is needed in the meantime.
+ * <p>
+ * PLEASE NOTE: The maps and sets are shared, so they must not be modified
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+class FoundEntitiesMap {
+
+    private final MapSet<Identifier, MainIdentifier> all = new MapSet<>();
+    private final Map<MainResource, MapSet<Identifier, MainIdentifier>> byResource = new HashMap<>();
+    private final Set<AnalysisIdentifier> analysisIdentifiers;
+
+    FoundEntitiesMap(List<PathwayNodeSummary> pathways) {
+        for (PathwayNodeSummary pathway : pathways) {
+            all.addAll(pathway.getData().getIdentifierMap());
+        }
+
+        Set<AnalysisIdentifier> analysisIdentifiers = new HashSet<>();
+        for (Identifier identifier : all.keySet()) {
+            analysisIdentifiers.add(identifier.getValue());
+            for (MainIdentifier mainIdentifier : all.getElements(identifier)) {
+                byResource.computeIfAbsent(mainIdentifier.getResource(), r -> new MapSet<>()).add(identifier, mainIdentifier);
+            }
+        }
+        this.analysisIdentifiers = Collections.unmodifiableSet(analysisIdentifiers);
+    }
+
+    MapSet<Identifier, MainIdentifier> getAll() {
+        return all;
+    }
+
+    /**
+     * @return the identifiers found for the main resource (an empty map when there are none)
+     */
+    MapSet<Identifier, MainIdentifier> getByResource(MainResource mainResource) {
+        MapSet<Identifier, MainIdentifier> rtn = byResource.get(mainResource);
+        return rtn != null ? rtn : new MapSet<>();
+    }
+
+    Set<AnalysisIdentifier> getAnalysisIdentifiers() {
+        return analysisIdentifiers;
+    }
+}
@@ -44,6 +44,19 @@ public class PathwayNodeSummary {
         this.data = new PathwayNodeData(epns.getData());
     }
 
+    /**
+     * Creates a copy of the summary with different data
+     */
+    public PathwayNodeSummary(PathwayNodeSummary summary, PathwayNodeData data) {
+        this.stId = summary.stId;
+        this.pathwayId = summary.pathwayId;
+        this.name = summary.name;
+        this.species = summary.species;
+        this.llp = summary.llp;
+        this.isInDisease = summary.isInDisease;
+        this.data = data;
+    }
+
     public String getStId() {
         return stId;
     }
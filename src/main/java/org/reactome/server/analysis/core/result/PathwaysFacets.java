@@ -0,0 +1,176 @@
+package org.reactome.server.analysis.core.result;
+
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.SpeciesNode;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.result.model.Bin;
+import org.reactome.server.analysis.core.util.MapSet;
+import org.reactome.server.graph.domain.model.Species;
+
+import java.util.*;
+
+/**
+ * Pathways passing the species, disease and p-value filters for a resource, together with their size and whether
+ * something was found in them. Those are the expensive values to get from the pathways, so they are calculated in a
+ * single pass and then both the size histogram and the selections for any size range are derived from them.
+ * <p>
+ * The facets of a result that has not been filtered are kept in its PathwaysIndex (see getKey), so the queries the
+ * UI issues together for every page view (filter, binned sizes, species and resource hits) walk the pathways once.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+class PathwaysFacets {
+
+    // The size ranges are chosen by the user, so only the most recent selections are kept
+    private static final int MAX_SELECTIONS = 16;
+
+    private final List<PathwayNodeSummary> pathways;
+    private final boolean importableOnly;
+
+    // Positions of the pathways passing the species, disease and p-value filters, their size and if found
+    private final int[] positions;
+    private final int[] sizes;
+    private final boolean[] found;
+
+    private final Map<String, Selection> selections = Collections.synchronizedMap(new LinkedHashMap<String, Selection>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Selection> eldest) {
+            return size() > MAX_SELECTIONS;
+        }
+    });
+
+    /**
+     * @param selection positions of the pathways to take into account (null for all of them)
+     */
+    PathwaysFacets(List<PathwayNodeSummary> pathways, int[] selection, boolean includeInteractors,
+                   List<Species> species, String resource, Double pValue, boolean includeDisease, boolean importableOnly) {
+        this.pathways = pathways;
+        this.importableOnly = importableOnly;
+        MainResource mr = ResourceFactory.getMainResource(resource);
+        int total = selection == null ? pathways.size() : selection.length;
+        int[] positions = new int[total];
+        int[] sizes = new int[total];
+        boolean[] found = new boolean[total];
+        int n = 0;
+        for (int i = 0; i < total; i++) {
+            int position = selection == null ? i : selection[i];
+            PathwayNodeSummary pathway = pathways.get(position);
+            if (!includeDisease && pathway.isInDisease()) continue;
+            if (species != null && !species.isEmpty() && !pathway.getSpecies().isIn(species)) continue;
+            PathwayNodeData data = pathway.getData();
+
+            Double pwypValue = (mr == null) ? data.getEntitiesPValue(importableOnly) : data.getEntitiesPValue(mr);
+            if (pwypValue == null || (pValue != null && pwypValue > pValue)) continue;
+
+            positions[n] = position;
+            sizes[n] = (mr == null) ?
+                    data.getEntitiesCount(importableOnly) + (includeInteractors ? data.getInteractorsCount(importableOnly) : 0) :
+                    data.getEntitiesCount(mr) + (includeInteractors ? data.getInteractorsCount(mr) : 0);
+            found[n] = ((mr == null) ?
+                    data.getEntitiesFound(importableOnly) + data.getInteractorsFound(importableOnly) :
+                    data.getEntitiesFound(mr) + data.getInteractorsFound(mr)) > 0;
+            n++;
+        }
+        this.positions = Arrays.copyOf(positions, n);
+        this.sizes = Arrays.copyOf(sizes, n);
+        this.found = Arrays.copyOf(found, n);
+    }
+
+    /**
+     * @return the key identifying the facets for the given filters
+     */
+    static String getKey(List<Species> species, String resource, Double pValue, boolean includeDisease, boolean importableOnly) {
+        StringBuilder key = new StringBuilder();
+        if (species != null) {
+            species.stream()
+                    .map(s -> s.getDbId() + "/" + s.getTaxId())
+                    .sorted()
+                    .forEach(s -> key.append(s).append(","));
+        }
+        MainResource mr = ResourceFactory.getMainResource(resource);
+        return key.append(":").append(mr != null ? mr.getName() : "")
+                .append(":").append(pValue)
+                .append(":").append(includeDisease)
+                .append(":").append(importableOnly).toString();
+    }
+
+    /**
+     * Counts the number of different pathways per size bin (the pathways found or not)
+     */
+    List<Bin> getBins(int binSize) {
+        MapSet<Integer, Long> sizeMap = new MapSet<>();
+        for (int i = 0; i < positions.length; i++) {
+            sizeMap.add(sizes[i] / binSize, pathways.get(positions[i]).getPathwayId());
+        }
+        List<Bin> rtn = new ArrayList<>();
+        for (Integer key : sizeMap.keySet()) {
+            rtn.add(new Bin(key, sizeMap.getElements(key).size()));
+        }
+        return rtn;
+    }
+
+    /**
+     * When min or max are null, all the pathways with a size greater than zero are selected
+     *
+     * @return the found pathways within the size range
+     */
+    Selection getSelection(Integer min, Integer max) {
+        String key = (min == null || max == null) ? "" : min + ":" + max;
+        Selection rtn = selections.get(key);
+        if (rtn == null) {
+            rtn = new Selection(min, max);
+            selections.put(key, rtn);
+        }
+        return rtn;
+    }
+
+    /**
+     * Pathways passing all the filters with the number of them per resource and species
+     * <p>
+     * PLEASE NOTE: It is shared, so it must not be modified
+     */
+    class Selection {
+        private final int[] positions;
+        private final Map<String, Integer> resourceHits = new HashMap<>();
+        private final Map<SpeciesNode, Integer> speciesHits = new HashMap<>();
+
+        private Selection(Integer min, Integer max) {
+            int[] selected = new int[PathwaysFacets.this.positions.length];
+            int n = 0;
+            for (int i = 0; i < selected.length; i++) {
+                if (!found[i]) continue;
+                int size = sizes[i];
+                if ((min == null || max == null) ? size <= 0 : min > size || max < size) continue;
+
+                int position = PathwaysFacets.this.positions[i];
+                selected[n++] = position;
+                PathwayNodeSummary pathway = pathways.get(position);
+                PathwayNodeData data = pathway.getData();
+                for (MainResource r : data.getResources()) {
+                    if ((!importableOnly || !r.isAuxMainResource()) && data.getEntitiesPValue(r) != null) {
+                        resourceHits.put(r.getName(), resourceHits.getOrDefault(r.getName(), 0) + 1);
+                    }
+                }
+                speciesHits.put(pathway.getSpecies(), 1 + speciesHits.getOrDefault(pathway.getSpecies(), 0));
+            }
+            this.positions = Arrays.copyOf(selected, n);
+        }
+
+        int[] getPositions() {
+            return positions;
+        }
+
+        int getTotal() {
+            return positions.length;
+        }
+
+        Map<String, Integer> getResourceHits() {
+            return resourceHits;
+        }
+
+        Map<SpeciesNode, Integer> getSpeciesHits() {
+            return speciesHits;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.reactome.server.analysis.core.result;
+
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.Resource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.result.model.FoundEntities;
+import org.reactome.server.analysis.core.result.model.FoundInteractors;
+import org.reactome.server.graph.domain.model.Species;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes over the list of pathways of a result, built the first time they are needed. Since that list is never
+ * modified, the index is shared by the result and all the views created from it when filtering.
+ * <p>
+ * PLEASE NOTE: The index is kept with the cached results, which are weighed by the size of their files. So what is
+ * built from the details of the pathways (found entities and interactors) is either bounded or only softly referenced,
+ * otherwise it would keep the details that the pathways themselves do not keep (see PathwayNodeData.getDetails)
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+class PathwaysIndex {
+
+    // Filters are chosen by the user, so only the facets of the most recently used ones are kept
+    private static final int MAX_FACETS = 32;
+    // Found entities and interactors are requested per pathway, so only the most recently requested ones are kept
+    private static final int MAX_FOUND_ELEMENTS = 32;
+
+    private final List<PathwayNodeSummary> pathways;
+
+    // Positions of the pathways sorted per sort type, resource and order
+    private final Map<String, SortedPositions> sortedPositions = new ConcurrentHashMap<>();
+
+    // Found entities and interactors of the pathways in each position (without filtering by resource)
+    private final Map<Integer, FoundEntities> foundEntities = leastRecentlyUsed(MAX_FOUND_ELEMENTS);
+    private final Map<Integer, FoundInteractors> foundInteractors = leastRecentlyUsed(MAX_FOUND_ELEMENTS);
+
+    // Facets of all the pathways per filter (see PathwaysFacets.getKey)
+    private final Map<String, PathwaysFacets> facets = leastRecentlyUsed(MAX_FACETS);
+
+    // Found entities of all the pathways (built again if it has been collected)
+    private volatile SoftReference<FoundEntitiesMap> foundEntitiesMap;
+
+    // Positions of the pathways by stId and dbId
+    private volatile Map<String, Integer> stIdToPosition;
+    private volatile Map<Long, Integer> dbIdToPosition;
+
+    // Positions of the pathways sorted by dbId (the ones without dbId are left out)
+    private volatile int[] dbIdOrder;
+
+    PathwaysIndex(List<PathwayNodeSummary> pathways) {
+        this.pathways = pathways;
+    }
+
+    /**
+     * Same criteria as PathwayNodeSummary.is: identifiers starting with "R-" are stIds, otherwise dbIds
+     *
+     * @return the position of the pathway with the given identifier or -1 if it is not present
+     */
+    int getPosition(String identifier) {
+        if (stIdToPosition == null) buildIdentifiersIndex();
+        identifier = identifier.trim();
+        Integer rtn;
+        if (identifier.startsWith("R-")) {
+            rtn = stIdToPosition.get(identifier);
+        } else {
+            try {
+                rtn = dbIdToPosition.get(Long.valueOf(identifier));
+            } catch (NumberFormatException ex) {
+                rtn = null;
+            }
+        }
+        return rtn != null ? rtn : -1;
+    }
+
+    private synchronized void buildIdentifiersIndex() {
+        if (stIdToPosition != null) return;
+        Map<String, Integer> stIds = new HashMap<>();
+        Map<Long, Integer> dbIds = new HashMap<>();
+        for (int i = 0; i < pathways.size(); i++) {
+            PathwayNodeSummary pathway = pathways.get(i);
+            if (pathway.getStId() != null) stIds.putIfAbsent(pathway.getStId(), i);
+            if (pathway.getPathwayId() != null) dbIds.putIfAbsent(pathway.getPathwayId(), i);
+        }
+        dbIdToPosition = dbIds;
+        stIdToPosition = stIds;
+    }
+
+    /**
+     * PLEASE NOTE: The returned array is shared, so it must not be modified
+     */
+    int[] getPositionsByDbId() {
+        int[] rtn = dbIdOrder;
+        if (rtn == null) {
+            rtn = new int[pathways.size()];
+            int n = 0;
+            for (int i = 0; i < pathways.size(); i++) {
+                if (pathways.get(i).getPathwayId() != null) rtn[n++] = i;
+            }
+            dbIdOrder = rtn = sort(Arrays.copyOf(rtn, n), Comparator.comparing(PathwayNodeSummary::getPathwayId));
+        }
+        return rtn;
+    }
+
+    /**
+     * PLEASE NOTE: The returned object is shared, so it must not be modified (filtering creates new ones)
+     */
+    FoundEntities getFoundEntities(int position, List<String> expNames) {
+        FoundEntities rtn = foundEntities.get(position);
+        if (rtn == null) {
+            rtn = new FoundEntities(pathways.get(position), expNames);
+            foundEntities.put(position, rtn);
+        }
+        return rtn;
+    }
+
+    /**
+     * PLEASE NOTE: The returned object is shared, so it must not be modified (filtering creates new ones)
+     */
+    FoundInteractors getFoundInteractors(int position, List<String> expNames) {
+        FoundInteractors rtn = foundInteractors.get(position);
+        if (rtn == null) {
+            rtn = new FoundInteractors(pathways.get(position), expNames);
+            foundInteractors.put(position, rtn);
+        }
+        return rtn;
+    }
+
+    FoundEntitiesMap getFoundEntitiesMap() {
+        SoftReference<FoundEntitiesMap> reference = foundEntitiesMap;
+        FoundEntitiesMap rtn = reference == null ? null : reference.get();
+        if (rtn == null) {
+            synchronized (this) {
+                reference = foundEntitiesMap;
+                rtn = reference == null ? null : reference.get();
+                if (rtn == null) {
+                    rtn = new FoundEntitiesMap(pathways);
+                    foundEntitiesMap = new SoftReference<>(rtn);
+                }
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * The facets are calculated out of the lock, so concurrent requests for the same filter do not block each other
+     */
+    PathwaysFacets getFacets(boolean includeInteractors, List<Species> species, String resource, Double pValue, boolean includeDisease, boolean importableOnly) {
+        String key = PathwaysFacets.getKey(species, resource, pValue, includeDisease, importableOnly);
+        PathwaysFacets rtn = facets.get(key);
+        if (rtn == null) {
+            rtn = new PathwaysFacets(pathways, null, includeInteractors, species, resource, pValue, includeDisease, importableOnly);
+            facets.put(key, rtn);
+        }
+        return rtn;
+    }
+
+    SortedPositions getSortedPositions(String sortBy, String order, String resource) {
+        AnalysisSortType sortType = AnalysisSortType.getSortType(sortBy);
+        Resource r = resource != null ? ResourceFactory.getResource(resource) : null;
+        MainResource mr = r instanceof MainResource ? (MainResource) r : null;
+        boolean desc = order != null && order.toUpperCase().equals("DESC");
+        String key = sortType + ":" + (mr != null ? mr.getName() : "") + ":" + desc;
+        return sortedPositions.computeIfAbsent(key, k -> {
+            int[] all = new int[pathways.size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return new SortedPositions(sort(all, getComparator(sortType, mr, desc)));
+        });
+    }
+
+    private int[] sort(int[] selection, Comparator<PathwayNodeSummary> comparator) {
+        Integer[] positions = new Integer[selection.length];
+        for (int i = 0; i < positions.length; i++) positions[i] = selection[i];
+        // Stable, so pathways comparing equal keep the original order (as sorting the list used to do)
+        Arrays.sort(positions, (p1, p2) -> comparator.compare(pathways.get(p1), pathways.get(p2)));
+        int[] rtn = new int[positions.length];
+        for (int i = 0; i < rtn.length; i++) rtn[i] = positions[i];
+        return rtn;
+    }
+
+    /**
+     * The values are calculated out of the lock (see getFacets), so concurrent requests do not block each other
+     */
+    private static <K, V> Map<K, V> leastRecentlyUsed(int max) {
+        return Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > max;
+            }
+        });
+    }
+
+    private static Comparator<PathwayNodeSummary> getComparator(AnalysisSortType sortType, MainResource mr, boolean desc) {
+        Comparator<PathwayNodeSummary> comparator = mr != null ?
+                ComparatorFactory.getComparator(sortType, mr) :
+                ComparatorFactory.getComparator(sortType);
+        return desc ? Collections.reverseOrder(comparator) : comparator;
+    }
+
+    /**
+     * Positions of all the pathways in a given order and, for each position, its rank in that order
+     */
+    static class SortedPositions {
+        private final int[] positions;
+        private volatile int[] ranks;
+
+        SortedPositions(int[] positions) {
+            this.positions = positions;
+        }
+
+        int[] getPositions() {
+            return positions;
+        }
+
+        int getRank(int position) {
+            int[] ranks = this.ranks;
+            if (ranks == null) {
+                ranks = new int[positions.length];
+                for (int i = 0; i < positions.length; i++) ranks[positions[i]] = i;
+                this.ranks = ranks;
+            }
+            return ranks[position];
+        }
+    }
+}
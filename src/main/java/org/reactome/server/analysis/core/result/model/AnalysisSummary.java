@@ -59,6 +59,22 @@ public class AnalysisSummary {
         this.text = text;
     }
 
+    //Creates a clone
+    public AnalysisSummary(AnalysisSummary summary) {
+        this.token = summary.token;
+        this.projection = summary.projection;
+        this.interactors = summary.interactors;
+        this.type = summary.type;
+        this.sampleName = summary.sampleName;
+        this.species = summary.species;
+        this.text = summary.text;
+        this.includeDisease = summary.includeDisease;
+        this.fileName = summary.fileName;
+        this.server = summary.server;
+        this.gsaToken = summary.gsaToken;
+        this.gsaMethod = summary.gsaMethod;
+    }
+
     public AnalysisSummary(String token, ExternalAnalysisSummary summary) {
         this(token, summary.getProjection(), summary.getInteractors(), summary.getSampleName(),
              summary.getType(), summary.getServer(), summary.getIncludeDisease(),
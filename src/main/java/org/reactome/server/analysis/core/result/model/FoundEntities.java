@@ -34,7 +34,8 @@ public class FoundEntities {
         this.expNames = expNames;
 
         this.resources = new HashSet<>();
-        this.identifiers = new LinkedList<>();
+        // The same submitted identifier can be found for different resources, so they are merged by id
+        Map<String, FoundEntity> foundEntities = new LinkedHashMap<>();
         MapSet<Identifier, MainIdentifier> identifierMap = nodeSummary.getData().getIdentifierMap();
         for (Identifier identifier : identifierMap.keySet()) {
 
@@ -51,20 +52,19 @@ public class FoundEntities {
                 maps.add(new IdentifierMap(resource, mapsTo.getElements(resource)));
             }
 
-            boolean added = false;
-            for (FoundEntity foundEntity : this.identifiers) {
-                if (foundEntity.getId().equals(is.getId())) {
-                    foundEntity.merge(maps);
-                    added = true;
-                    break;
-                }
-            }
-            if (!added) {
-                this.identifiers.add(new FoundEntity(is, maps));
+            FoundEntity foundEntity = foundEntities.get(is.getId());
+            if (foundEntity != null) {
+                foundEntity.merge(maps);
+            } else {
+                foundEntities.put(is.getId(), new FoundEntity(is, maps));
             }
         }
+        this.identifiers = new ArrayList<>(foundEntities.values());
         //IMPORTANT TO BE HERE!
         this.found = this.identifiers.size();
+        // Calculated here so the object is not modified afterwards (it can be shared by concurrent requests)
+        getTotalEntitiesCount();
+        getResourceToMappedEntitiesCount();
     }
 
     public List<FoundEntity> getIdentifiers() {
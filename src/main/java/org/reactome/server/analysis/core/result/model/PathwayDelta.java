@@ -0,0 +1,105 @@
+package org.reactome.server.analysis.core.result.model;
+
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+
+import java.util.*;
+
+/**
+ * Differences for a pathway between two analysis results (e.g. treatment vs control). The statistics are null
+ * for the result where the pathway has not been hit.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class PathwayDelta {
+
+    private String stId;
+    private Long dbId;
+    private String name;
+    private SpeciesSummary species;
+
+    private EntityStatistics from;
+    private EntityStatistics to;
+
+    private List<String> entitiesAdded;
+    private List<String> entitiesRemoved;
+
+    /**
+     * @param from the pathway in the first result (null when it has not been hit)
+     * @param to   the pathway in the second result (null when it has not been hit)
+     */
+    public PathwayDelta(PathwayNodeSummary from, boolean fromInteractors, PathwayNodeSummary to, boolean toInteractors, String resource, boolean importableOnly) {
+        PathwayNodeSummary node = to != null ? to : from;
+        this.stId = node.getStId();
+        this.dbId = node.getPathwayId();
+        this.name = node.getName();
+        this.species = new SpeciesSummary(node.getSpecies());
+
+        this.from = getStatistics(from, resource, fromInteractors, importableOnly);
+        this.to = getStatistics(to, resource, toInteractors, importableOnly);
+
+        Set<String> before = getFoundEntities(from, resource, importableOnly);
+        Set<String> after = getFoundEntities(to, resource, importableOnly);
+        this.entitiesAdded = new ArrayList<>(after);
+        this.entitiesAdded.removeAll(before);
+        this.entitiesRemoved = new ArrayList<>(before);
+        this.entitiesRemoved.removeAll(after);
+    }
+
+    private static EntityStatistics getStatistics(PathwayNodeSummary node, String resource, boolean interactors, boolean importableOnly) {
+        if (node == null) return null;
+        PathwayNodeData d = node.getData();
+        if (resource.equals("TOTAL")) return new EntityStatistics(d, interactors, importableOnly);
+        for (MainResource mr : d.getResources()) {
+            if (mr.getName().equals(resource)) return new EntityStatistics(mr, d, interactors);
+        }
+        return null;
+    }
+
+    //The details are not kept by the (shared) pathway data, so comparing results does not fill the memory up
+    private static Set<String> getFoundEntities(PathwayNodeSummary node, String resource, boolean importableOnly) {
+        Set<String> rtn = new TreeSet<>();
+        if (node == null) return rtn;
+        PathwayNodeData.Details details = node.getData().getDetails();
+        Set<AnalysisIdentifier> found = resource.equals("TOTAL") ?
+                details.getFoundEntities(importableOnly) :
+                details.getFoundEntities(ResourceFactory.getMainResource(resource));
+        for (AnalysisIdentifier identifier : found) rtn.add(identifier.getId());
+        return rtn;
+    }
+
+    public String getStId() {
+        return stId;
+    }
+
+    public Long getDbId() {
+        return dbId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public SpeciesSummary getSpecies() {
+        return species;
+    }
+
+    public EntityStatistics getFrom() {
+        return from;
+    }
+
+    public EntityStatistics getTo() {
+        return to;
+    }
+
+    public List<String> getEntitiesAdded() {
+        return entitiesAdded;
+    }
+
+    public List<String> getEntitiesRemoved() {
+        return entitiesRemoved;
+    }
+}
@@ -14,6 +14,13 @@ public class ResourceSummary implements Comparable<ResourceSummary> {
         this.filtered = pathways;
     }
 
+    //Creates a clone
+    public ResourceSummary(ResourceSummary resourceSummary) {
+        this.resource = resourceSummary.resource;
+        this.pathways = resourceSummary.pathways;
+        this.filtered = resourceSummary.filtered;
+    }
+
     public String getResource() {
         return resource;
     }
@@ -35,6 +35,15 @@ public class SpeciesSummary implements Comparable<SpeciesSummary> {
         this.filtered = pathways;
     }
 
+    //Creates a clone
+    public SpeciesSummary(SpeciesSummary speciesSummary) {
+        this.dbId = speciesSummary.dbId;
+        this.taxId = speciesSummary.taxId;
+        this.name = speciesSummary.name;
+        this.pathways = speciesSummary.pathways;
+        this.filtered = speciesSummary.filtered;
+    }
+
     public Long getDbId() {
         return dbId;
     }
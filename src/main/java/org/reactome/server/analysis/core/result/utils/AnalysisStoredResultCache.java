@@ -0,0 +1,112 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the most recently used deserialised results in memory. The cache is bounded by the estimated size in memory
+ * of the results (based on the size of their files) and the least recently used ones are evicted first.
+ * <p>
+ * Entries are validated against the modification time and length in the store, so a result that has been deleted
+ * (expired token) or replaced is never served from memory. The cached results are never handed out, only
+ * copies of them sharing the pathways (see AnalysisStoredResult(AnalysisStoredResult)), so setting the summary of
+ * the returned ones does not affect the cached ones.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+class AnalysisStoredResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger("resultDataUtilsLogger");
+
+    // Rough ratio between the size of a deserialised result and its (Kryo) file
+    private static final int MEMORY_BYTES_PER_FILE_BYTE = 8;
+
+    // Keyed by the key of the results in their stores
+    private final Map<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long capacity;
+    private long weight = 0;
+
+    AnalysisStoredResultCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return a copy of the cached result or null if it is not cached (or its file changed)
+     */
+    AnalysisStoredResult get(ResultStore store, String name) {
+        String key = store.getKey(name);
+        Entry entry;
+        synchronized (this) {
+            entry = cache.get(key);
+        }
+        if (entry == null) return null;
+        //The store is checked without holding the monitor (it might have to hit the disk)
+        if (store.lastModified(name) == entry.lastModified && store.length(name) == entry.length) {
+            return new AnalysisStoredResult(entry.result);
+        }
+        remove(key, entry);
+        return null;
+    }
+
+    /**
+     * Caches a copy of the result just read from (or written to) the store
+     */
+    void put(ResultStore store, String name, AnalysisStoredResult result) {
+        String key = store.getKey(name);
+        Entry entry = new Entry(new AnalysisStoredResult(result), store.lastModified(name), store.length(name));
+        synchronized (this) {
+            remove(key);
+            if (entry.weight > capacity) return;
+
+            cache.put(key, entry);
+            weight += entry.weight;
+            Iterator<Entry> it = cache.values().iterator();
+            while (weight > capacity && it.hasNext()) {
+                weight -= it.next().weight;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * @param key the key of the result in its store (see ResultStore.getKey)
+     */
+    synchronized void remove(String key) {
+        Entry entry = cache.remove(key);
+        if (entry != null) weight -= entry.weight;
+    }
+
+    //Unless it has been replaced in the meantime
+    private synchronized void remove(String key, Entry entry) {
+        if (cache.remove(key, entry)) weight -= entry.weight;
+    }
+
+    synchronized void setCapacity(long capacity) {
+        this.capacity = capacity;
+        Iterator<Entry> it = cache.values().iterator();
+        while (weight > capacity && it.hasNext()) {
+            weight -= it.next().weight;
+            it.remove();
+        }
+        logger.info(String.format("Results cache capacity set to %d bytes", capacity));
+    }
+
+    private static class Entry {
+        final AnalysisStoredResult result;
+        final long lastModified;
+        final long length;
+        final long weight;
+
+        Entry(AnalysisStoredResult result, long lastModified, long length) {
+            this.result = result;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.weight = length * MEMORY_BYTES_PER_FILE_BYTE;
+        }
+    }
+}
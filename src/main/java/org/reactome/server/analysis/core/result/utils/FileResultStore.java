@@ -0,0 +1,115 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every result in its own "res_[name].bin" file. Subclasses decide the folder of each file.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public abstract class FileResultStore implements ResultStore {
+
+    private static final Pattern RESULT_FILE_PATTERN = Pattern.compile("^res_(.*)\\.bin$");
+
+    protected final File directory;
+
+    protected FileResultStore(String directory) {
+        this.directory = new File(directory);
+    }
+
+    /**
+     * @return the file where the result with the given name is kept
+     */
+    protected abstract File getFile(String name);
+
+    /**
+     * @return the maximum depth of the folders containing result files (1 for the directory itself)
+     */
+    protected abstract int getDepth();
+
+    @Override
+    public InputStream read(String name) throws IOException {
+        return new FileInputStream(getFile(name));
+    }
+
+    @Override
+    public InputStream read(String name, long offset, long length) throws IOException {
+        try (FileInputStream fis = new FileInputStream(getFile(name))) {
+            FileChannel channel = fis.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException(getKey(name));
+            }
+            return new ByteArrayInputStream(buffer.array());
+        }
+    }
+
+    /**
+     * The result is written to a temporary file that is then renamed
+     */
+    @Override
+    public void write(String name, ContentWriter writer) throws IOException {
+        File file = getFile(name);
+        Path target = file.toPath();
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try {
+            try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp.toFile()))) {
+                writer.write(os);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean delete(String name) {
+        return getFile(name).delete();
+    }
+
+    @Override
+    public long lastModified(String name) {
+        return getFile(name).lastModified();
+    }
+
+    @Override
+    public long length(String name) {
+        return getFile(name).length();
+    }
+
+    @Override
+    public Set<String> getNames() throws IOException {
+        Set<String> rtn = new HashSet<>();
+        if (!directory.isDirectory()) return rtn;
+        try (Stream<Path> files = Files.walk(directory.toPath(), getDepth())) {
+            files.forEach(path -> {
+                Matcher matcher = RESULT_FILE_PATTERN.matcher(path.getFileName().toString());
+                if (matcher.find()) rtn.add(matcher.group(1));
+            });
+        }
+        return rtn;
+    }
+
+    @Override
+    public String getKey(String name) {
+        return getFile(name).getPath();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + directory + "]";
+    }
+}
@@ -0,0 +1,25 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import java.io.File;
+
+/**
+ * All the result files in the same directory (the original "[directory]/res_[name].bin" layout)
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class FlatResultStore extends FileResultStore {
+
+    public FlatResultStore(String directory) {
+        super(directory);
+    }
+
+    @Override
+    protected File getFile(String name) {
+        return new File(directory, String.format("res_%s.bin", name));
+    }
+
+    @Override
+    protected int getDepth() {
+        return 1;
+    }
+}
@@ -0,0 +1,376 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded key-value store keeping all the results in a single append only file ("[directory]/results.pack"), so
+ * the result volume does not end up with millions of files. Every record is
+ * <pre>
+ *     [int name length][name][long timestamp][long content length][content]
+ * </pre>
+ * where a content length of -1 stands for the removal of the result. The position of the latest content for every
+ * name is kept in memory (rebuilt scanning the file when opening it) and the contents are read memory mapped. Once
+ * the space taken by replaced and removed results is bigger than the one of the live ones, the file is compacted in
+ * the background (see compact).
+ * <p>
+ * PLEASE NOTE: The file can only be opened by one process at a time
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class PackedResultStore implements ResultStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger("resultDataUtilsLogger");
+
+    private static final String FILE_NAME = "results.pack";
+
+    private static final long DELETED = -1;
+    // Content length while it is being written (a record with it is discarded when opening the file)
+    private static final long INCOMPLETE = -2;
+
+    // Below this size the space taken by replaced and removed results is not worth compacting the file
+    private static final long MIN_GARBAGE_TO_COMPACT = 64L * 1024 * 1024;
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "result-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private volatile State state;
+    private long garbage = 0;
+
+    // Only one compaction at a time (the store monitor is only held while swapping the files)
+    private final Object compaction = new Object();
+    private boolean compactionScheduled = false;
+
+    public PackedResultStore(String directory) throws IOException {
+        this.file = new File(directory, FILE_NAME);
+        Files.createDirectories(file.toPath().toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.state = new State(channel, new ConcurrentHashMap<>());
+        load();
+        if (needsCompaction()) compact();
+    }
+
+    @Override
+    public InputStream read(String name) throws IOException {
+        return read(name, 0, -1);
+    }
+
+    /**
+     * @param length the number of bytes to read (-1 to read till the end of the result)
+     */
+    @Override
+    public InputStream read(String name, long offset, long length) throws IOException {
+        while (true) {
+            State s = state;
+            Entry entry = s.index.get(name);
+            if (entry == null) throw new FileNotFoundException(getKey(name));
+            long size = length < 0 ? entry.length - offset : length;
+            if (offset < 0 || size < 0 || offset + size > entry.length) throw new EOFException(getKey(name));
+            try {
+                return new ByteBufferInputStream(s.channel.map(FileChannel.MapMode.READ_ONLY, entry.offset + offset, size));
+            } catch (ClosedChannelException e) {
+                if (s == state) throw e; //Otherwise the file has just been compacted, so it is tried again
+            }
+        }
+    }
+
+    @Override
+    public synchronized void write(String name, ContentWriter writer) throws IOException {
+        FileChannel channel = state.channel;
+        long position = channel.size();
+        long timestamp = System.currentTimeMillis();
+        ByteBuffer header = getHeader(name, timestamp, INCOMPLETE);
+        long offset = position + header.remaining();
+        try {
+            write(channel, header, position);
+            channel.position(offset);
+            OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void close() throws IOException {
+                    flush(); //The channel is kept open
+                }
+            };
+            writer.write(os);
+            os.flush();
+            long length = channel.position() - offset;
+            write(channel, (ByteBuffer) ByteBuffer.allocate(Long.BYTES).putLong(length).flip(), offset - Long.BYTES);
+            channel.force(false); //The result is only served once it is in the disk
+            Entry old = state.index.put(name, new Entry(offset, length, timestamp));
+            if (old != null) garbage += old.getRecordLength(name);
+        } catch (IOException | RuntimeException e) {
+            channel.truncate(position);
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String name) {
+        Entry old = state.index.get(name);
+        if (old == null) return false;
+        try {
+            FileChannel channel = state.channel;
+            ByteBuffer header = getHeader(name, System.currentTimeMillis(), DELETED);
+            garbage += old.getRecordLength(name) + header.remaining();
+            write(channel, header, channel.size());
+            state.index.remove(name);
+        } catch (IOException e) {
+            logger.error(String.format("'%s' could not be deleted from '%s'", name, file), e);
+            return false;
+        }
+        if (!compactionScheduled && needsCompaction()) {
+            compactionScheduled = true;
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    logger.error(String.format("'%s' could not be compacted", file), e);
+                } finally {
+                    synchronized (this) {
+                        compactionScheduled = false;
+                    }
+                }
+            });
+        }
+        return true;
+    }
+
+    @Override
+    public long lastModified(String name) {
+        Entry entry = state.index.get(name);
+        return entry == null ? 0 : entry.timestamp;
+    }
+
+    @Override
+    public long length(String name) {
+        Entry entry = state.index.get(name);
+        return entry == null ? 0 : entry.length;
+    }
+
+    @Override
+    public Set<String> getNames() {
+        return new HashSet<>(state.index.keySet());
+    }
+
+    @Override
+    public String getKey(String name) {
+        return file.getPath() + "#" + name;
+    }
+
+    /**
+     * Rewrites the file with the live results only. The live records are copied without holding the store monitor, so
+     * results are read and written in the meantime. The records appended while copying are then copied as they are
+     * and the new file replaces the current one, holding the monitor only for that.
+     */
+    public void compact() throws IOException {
+        synchronized (compaction) {
+            long start = System.currentTimeMillis();
+            State old;
+            Map<String, Entry> live;
+            long copiedUpTo;
+            synchronized (this) {
+                old = state;
+                if (!old.channel.isOpen()) return;
+                live = new HashMap<>(old.index);
+                copiedUpTo = old.channel.size();
+            }
+
+            Path tmp = Files.createTempFile(file.toPath().toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+            FileChannel out = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                Map<String, Entry> index = new ConcurrentHashMap<>();
+                for (Map.Entry<String, Entry> e : live.entrySet()) {
+                    Entry entry = e.getValue();
+                    long recordLength = entry.getRecordLength(e.getKey());
+                    long position = out.position();
+                    transfer(old.channel, entry.offset + entry.length - recordLength, recordLength, out);
+                    index.put(e.getKey(), new Entry(position + recordLength - entry.length, entry.length, entry.timestamp));
+                }
+                synchronized (this) {
+                    if (state != old || !old.channel.isOpen()) return; //Closed in the meantime
+                    //The records appended while copying (new results and removals) are applied to the new index
+                    long tail = out.position();
+                    transfer(old.channel, copiedUpTo, old.channel.size() - copiedUpTo, out);
+                    long tailGarbage = scan(out, tail, index);
+                    out.force(true);
+                    out.close();
+                    try {
+                        Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    state = new State(channel, index);
+                    garbage = tailGarbage;
+                    old.channel.close();
+                }
+            } finally {
+                out.close();
+                Files.deleteIfExists(tmp);
+            }
+            logger.info(String.format("'%s' compacted in %d ms", file, System.currentTimeMillis() - start));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        state.channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + file + "]";
+    }
+
+    /**
+     * Builds the index scanning the file. Whatever follows a truncated or incomplete record is discarded.
+     */
+    private void load() throws IOException {
+        FileChannel channel = state.channel;
+        garbage = scan(channel, 0, state.index);
+        long size = channel.size();
+        long position = channel.position();
+        if (position < size) {
+            logger.warn(String.format("'%s' truncated at %d (%d bytes discarded)", file, position, size - position));
+            channel.truncate(position);
+        }
+        logger.info(String.format("%d results found in '%s'", state.index.size(), file));
+    }
+
+    /**
+     * Applies the records from position to the index, leaving the channel position where the last complete one ends
+     *
+     * @return the space taken by the records replaced or removed while scanning
+     */
+    private static long scan(FileChannel channel, long position, Map<String, Entry> index) throws IOException {
+        long garbage = 0;
+        long size = channel.size();
+        while (position + Integer.BYTES <= size) {
+            int nameLength = read(channel, position, Integer.BYTES).getInt();
+            if (nameLength < 0 || position + Integer.BYTES + nameLength + 2 * Long.BYTES > size) break;
+            ByteBuffer aux = read(channel, position + Integer.BYTES, nameLength + 2 * Long.BYTES);
+            byte[] name = new byte[nameLength];
+            aux.get(name);
+            long timestamp = aux.getLong();
+            long length = aux.getLong();
+            long offset = position + Integer.BYTES + nameLength + 2 * Long.BYTES;
+            if (length == INCOMPLETE || length < DELETED || offset + Math.max(length, 0) > size) break;
+
+            String key = new String(name, StandardCharsets.UTF_8);
+            Entry old = length == DELETED ? index.remove(key) : index.put(key, new Entry(offset, length, timestamp));
+            if (old != null) garbage += old.getRecordLength(key);
+            if (length == DELETED) garbage += offset - position;
+            position = offset + Math.max(length, 0);
+        }
+        channel.position(position);
+        return garbage;
+    }
+
+    private boolean needsCompaction() {
+        try {
+            return garbage > MIN_GARBAGE_TO_COMPACT && garbage > state.channel.size() / 2;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void transfer(FileChannel from, long position, long length, FileChannel to) throws IOException {
+        for (long n = 0; n < length; ) {
+            n += from.transferTo(position + n, length - n, to);
+        }
+    }
+
+    private static ByteBuffer getHeader(String name, long timestamp, long length) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer rtn = ByteBuffer.allocate(Integer.BYTES + key.length + 2 * Long.BYTES);
+        rtn.putInt(key.length).put(key).putLong(timestamp).putLong(length);
+        rtn.flip();
+        return rtn;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer rtn = ByteBuffer.allocate(length);
+        while (rtn.hasRemaining()) {
+            if (channel.read(rtn, position + rtn.position()) < 0) throw new EOFException();
+        }
+        rtn.flip();
+        return rtn;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static class State {
+        final FileChannel channel;
+        final Map<String, Entry> index;
+
+        State(FileChannel channel, Map<String, Entry> index) {
+            this.channel = channel;
+            this.index = index;
+        }
+    }
+
+    private static class Entry {
+        final long offset;
+        final long length;
+        final long timestamp;
+
+        Entry(long offset, long length, long timestamp) {
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+
+        long getRecordLength(String name) {
+            return Integer.BYTES + name.getBytes(StandardCharsets.UTF_8).length + 2 * Long.BYTES + length;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -2,9 +2,7 @@ package org.reactome.server.analysis.core.result.utils;
 
 
 import com.esotericsoftware.kryo.Kryo;
-import com.esotericsoftware.kryo.io.Input;
-import com.esotericsoftware.kryo.io.Output;
-
+import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.serializers.FieldSerializer;
 import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
 import com.googlecode.concurrenttrees.radix.node.util.AtomicReferenceArrayListAdapter;
@@ -16,6 +14,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -24,16 +25,44 @@ public abstract class ResultDataUtils {
 
     private static final Logger logger = LoggerFactory.getLogger("resultDataUtilsLogger");
 
+    // By default a quarter of the heap is used to keep the most recently used results in memory
+    private static final AnalysisStoredResultCache cache = new AnalysisStoredResultCache(Runtime.getRuntime().maxMemory() / 4);
+
+    // Results saved asynchronously that are not in their files yet
+    private static final ResultWriteQueue queue = new ResultWriteQueue();
+
+    /**
+     * Sets the maximum estimated memory (in bytes) used to keep deserialised results (0 disables the cache)
+     */
+    public static void setCacheCapacity(long bytes) {
+        cache.setCapacity(bytes);
+    }
+
     public static AnalysisStoredResult getAnalysisResult(String fileName) throws FileNotFoundException {
-        return getAnalysisResult(fileName, null);
+        return getAnalysisResult(ResultStoreFactory.FILES, fileName, null);
     }
 
     public static AnalysisStoredResult getAnalysisResult(String fileName, ReportParameters report) throws FileNotFoundException {
+        return getAnalysisResult(ResultStoreFactory.FILES, fileName, report);
+    }
+
+    public static AnalysisStoredResult getAnalysisResult(ResultStore store, String name) throws FileNotFoundException {
+        return getAnalysisResult(store, name, null);
+    }
+
+    public static AnalysisStoredResult getAnalysisResult(ResultStore store, String name, ReportParameters report) throws FileNotFoundException {
         long start = -1;
         if(report!=null) {
             start = System.currentTimeMillis();
         }
-        AnalysisStoredResult rtn = retrieveAnalysisResult(fileName);
+        AnalysisStoredResult rtn = queue.get(store, name);
+        if (rtn == null) rtn = cache.get(store, name);
+        if (rtn == null) {
+            rtn = retrieveAnalysisResult(store, name);
+            cache.put(store, name, rtn);
+        } else {
+            logger.debug(store.getKey(name) + " retrieved from memory");
+        }
         if(report!=null){
             report.setAnalysisStoredResult(rtn);
             report.setMilliseconds(System.currentTimeMillis()-start);
@@ -43,41 +72,124 @@ public abstract class ResultDataUtils {
     }
 
     public static void kryoSerialisation(AnalysisStoredResult result, String fileName){
+        kryoSerialisation(result, ResultStoreFactory.FILES, fileName);
+    }
+
+    public static void kryoSerialisation(AnalysisStoredResult result, ResultStore store, String name){
         long start = System.currentTimeMillis();
         try {
-            Kryo kryo = new Kryo();
-            kryo.setRegistrationRequired(false);
-            kryo.setReferences(true);
-            kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
-            kryo.register(AtomicReferenceArrayListAdapter.class, new FieldSerializer<>(kryo, AtomicReferenceArrayListAdapter.class));
-            OutputStream file = new FileOutputStream(fileName);
-            Output output = new Output(file);
-            kryo.writeClassAndObject(output, result);
-            output.close();
-        } catch (FileNotFoundException e) {
+            write(getKryo(), result, store, name);
+        } catch (IOException e) {
             logger.error(e.getMessage(), e);
-            e.printStackTrace();
+            return;
         }
         long end = System.currentTimeMillis();
         logger.info(String.format("%s saved in %d ms", result.getClass().getSimpleName(), end - start));
     }
 
-    private static AnalysisStoredResult retrieveAnalysisResult(String fileName) throws FileNotFoundException {
-        InputStream file = new FileInputStream(fileName);
-        AnalysisStoredResult rtn = (AnalysisStoredResult) ResultDataUtils.read(file);
-        logger.info(fileName + " retrieved");
+    public static void kryoSerialisationAsync(AnalysisStoredResult result, String fileName) {
+        kryoSerialisationAsync(result, ResultStoreFactory.FILES, fileName);
+    }
+
+    /**
+     * Queues the result to be written to the store in the background. Until then it is served from memory, so the
+     * result can be retrieved straight away (a copy of it is queued, so the result can be modified afterwards)
+     * <p>
+     * PLEASE NOTE: When there are too many results pending to be written, the result is written straight away
+     *
+     * @throws UncheckedIOException when the result is written straight away and it fails
+     */
+    public static void kryoSerialisationAsync(AnalysisStoredResult result, ResultStore store, String name) {
+        queue.add(store, name, new AnalysisStoredResult(result));
+    }
+
+    /**
+     * Waits until all the results queued to be written in the background are in their stores (the ones that cannot be
+     * written are kept in memory and retried later)
+     */
+    public static void flushPendingResults() {
+        queue.flush();
+    }
+
+    /**
+     * Deletes the result from the store and from memory. When it is pending to be written in the background, it is
+     * removed from the queue first, so it is not written back to the store afterwards
+     *
+     * @return true if the result was in the store
+     */
+    public static boolean delete(ResultStore store, String name) {
+        queue.remove(store, name);
+        cache.remove(store.getKey(name));
+        return store.delete(name);
+    }
+
+    /**
+     * Writes a batch of results sharing the serialiser
+     *
+     * @return the results that could not be written
+     */
+    static List<ResultWriteQueue.PendingResult> kryoSerialisation(Collection<ResultWriteQueue.PendingResult> results) {
+        long start = System.currentTimeMillis();
+        Kryo kryo = getKryo();
+        List<ResultWriteQueue.PendingResult> rtn = new ArrayList<>();
+        for (ResultWriteQueue.PendingResult pending : results) {
+            try {
+                write(kryo, pending.result, pending.store, pending.name);
+            } catch (IOException e) {
+                logger.error(e.getMessage(), e);
+                rtn.add(pending);
+            }
+        }
+        long end = System.currentTimeMillis();
+        logger.info(String.format("%d %s saved in %d ms", results.size() - rtn.size(), AnalysisStoredResult.class.getSimpleName(), end - start));
         return rtn;
     }
 
-    private static Object read(InputStream file) {
+    private static void write(Kryo kryo, AnalysisStoredResult result, ResultStore store, String name) throws IOException {
+        try {
+            store.write(name, os -> SectionedResultFile.write(kryo, result, os));
+            cache.put(store, name, result);
+        } catch (IOException | RuntimeException e) {
+            cache.remove(store.getKey(name));
+            if (e instanceof IOException) throw (IOException) e;
+            throw new IOException("Error writing " + store.getKey(name), e);
+        }
+    }
+
+    private static Kryo getKryo() {
         Kryo kryo = new Kryo();
         kryo.setRegistrationRequired(false);
         kryo.setReferences(true);
         kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
         kryo.register(AtomicReferenceArrayListAdapter.class, new FieldSerializer<>(kryo, AtomicReferenceArrayListAdapter.class));
-        Input input = new Input(file);
-        Object obj = kryo.readClassAndObject(input);
-        input.close();
-        return obj;
+        return kryo;
+    }
+
+    /**
+     * Only the statistics are read here, while the details of each pathway are read the first time they are needed
+     * (see SectionedResultFile). Results that cannot be read (stored as a whole by previous versions, stored with a
+     * different version of the format or corrupted) are considered gone.
+     */
+    private static AnalysisStoredResult retrieveAnalysisResult(ResultStore store, String name) throws FileNotFoundException {
+        AnalysisStoredResult rtn;
+        try {
+            boolean sectioned;
+            try (InputStream is = store.read(name, 0, Math.min(Integer.BYTES, store.length(name)))) {
+                sectioned = SectionedResultFile.isSectioned(is);
+            }
+            if (!sectioned) {
+                //The classes of the results stored as a whole have changed since, so Kryo cannot rebuild them
+                logger.warn(String.format("%s was stored by a previous version and cannot be read", store.getKey(name)));
+                throw new FileNotFoundException(store.getKey(name));
+            }
+            rtn = SectionedResultFile.read(ResultDataUtils::getKryo, store, name);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException | KryoException e) {
+            logger.error(e.getMessage(), e);
+            throw new FileNotFoundException(store.getKey(name));
+        }
+        logger.info(store.getKey(name) + " retrieved");
+        return rtn;
     }
 }
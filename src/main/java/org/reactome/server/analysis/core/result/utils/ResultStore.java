@@ -0,0 +1,67 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+
+/**
+ * Where the serialised results are kept. Results are stored by name (the token name, see Tokenizer.getName), so
+ * the way they are laid out is up to the implementation (see ResultStoreFactory for the available ones).
+ * <p>
+ * PLEASE NOTE: Implementations are used concurrently, so they have to be thread safe
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public interface ResultStore {
+
+    /**
+     * @throws FileNotFoundException when there is no result stored with the name
+     */
+    InputStream read(String name) throws IOException;
+
+    /**
+     * Used to read only a part of the stored result
+     *
+     * @throws FileNotFoundException when there is no result stored with the name
+     * @throws EOFException          when the part goes beyond the end of the stored result
+     */
+    InputStream read(String name, long offset, long length) throws IOException;
+
+    /**
+     * Stores the content written by the writer. The previous content (if any) is replaced once the new one has been
+     * completely written, so a partially written result is never read
+     */
+    void write(String name, ContentWriter writer) throws IOException;
+
+    /**
+     * @return true if there was a result stored with the name
+     */
+    boolean delete(String name);
+
+    /**
+     * @return the time the result was stored (in milliseconds) or 0 if there is none stored with the name
+     */
+    long lastModified(String name);
+
+    /**
+     * @return the length of the stored result (in bytes) or 0 if there is none stored with the name
+     */
+    long length(String name);
+
+    /**
+     * @return the names of all the stored results
+     */
+    Set<String> getNames() throws IOException;
+
+    /**
+     * @return a key identifying the result stored with the name among all the stores (e.g. its file name)
+     */
+    String getKey(String name);
+
+    interface ContentWriter {
+        void write(OutputStream os) throws IOException;
+    }
+}
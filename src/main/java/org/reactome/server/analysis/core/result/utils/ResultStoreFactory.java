@@ -0,0 +1,61 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public abstract class ResultStoreFactory {
+
+    public enum TYPE { FLAT, SHARDED, PACKED }
+
+    // The same directory has to be handled by the same store (it is mandatory for the packed ones)
+    private static final Map<String, ResultStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * Used for the results addressed by their file name (the name of the result is the file name itself)
+     */
+    static final ResultStore FILES = new FileResultStore("") {
+        @Override
+        protected File getFile(String name) {
+            return new File(name);
+        }
+
+        @Override
+        protected int getDepth() {
+            return 0;
+        }
+
+        @Override
+        public Set<String> getNames() {
+            return Collections.emptySet();
+        }
+    };
+
+    /**
+     * @param type one of TYPE (case insensitive) or null for the default one (FLAT)
+     */
+    public static ResultStore getResultStore(String type, String directory) {
+        TYPE t = type == null || type.trim().isEmpty() ? TYPE.FLAT : TYPE.valueOf(type.trim().toUpperCase());
+        return stores.computeIfAbsent(t + ":" + new File(directory).getAbsolutePath(), k -> {
+            switch (t) {
+                case SHARDED:
+                    return new ShardedResultStore(directory);
+                case PACKED:
+                    try {
+                        return new PackedResultStore(directory);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(String.format("The results store in '%s' could not be opened", directory), e);
+                    }
+                default:
+                    return new FlatResultStore(directory);
+            }
+        });
+    }
+}
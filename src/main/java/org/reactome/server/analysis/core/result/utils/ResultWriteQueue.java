@@ -0,0 +1,211 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Write-behind queue for the result stores. Results are written by a single background thread in batches of all the
+ * ones pending at that moment, and a result queued again before being written replaces the previous one (only the
+ * last one is written). Until it is in its store, the pending result is served from memory.
+ * <p>
+ * Results that cannot be written are kept pending (so they are still served) and retried later, waiting longer after
+ * every failed attempt (until they are removed). The number of pending results is bounded, so when the queue is full the results are written
+ * by the caller instead.
+ * <p>
+ * PLEASE NOTE: Pending results are written before the JVM exits (unless it is killed)
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+class ResultWriteQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger("resultDataUtilsLogger");
+
+    private static final int MAX_PENDING = 100;
+
+    private static final long RETRY_DELAY = 1_000L;
+    private static final long MAX_RETRY_DELAY = 60_000L;
+
+    // Keyed by the key of the results in their stores
+    private final Map<String, PendingResult> pending = new LinkedHashMap<>();
+    // The batch being written by the background thread (only accessed holding the monitor)
+    private List<PendingResult> writing = Collections.emptyList();
+    private final int maxPending;
+    private boolean scheduled = false;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "result-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ResultWriteQueue() {
+        this(MAX_PENDING);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "result-writer-flush"));
+    }
+
+    ResultWriteQueue(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Queues the result to be written to the store (the result must not be modified afterwards). When the queue is
+     * full, the result is written straight away
+     *
+     * @throws UncheckedIOException when the result is written straight away and it fails
+     */
+    void add(ResultStore store, String name, AnalysisStoredResult result) {
+        PendingResult pendingResult = new PendingResult(store, name, result);
+        synchronized (this) {
+            if (pending.size() < maxPending || pending.containsKey(pendingResult.key)) {
+                pending.put(pendingResult.key, pendingResult);
+                if (!scheduled) {
+                    scheduled = true;
+                    executor.execute(this::drain);
+                } else {
+                    notifyAll(); //The writer might be waiting to retry the failed ones
+                }
+                return;
+            }
+        }
+        logger.warn(String.format("%d results pending to be written. %s is written straight away", maxPending, pendingResult.key));
+        if (!ResultDataUtils.kryoSerialisation(Collections.singletonList(pendingResult)).isEmpty()) {
+            throw new UncheckedIOException(new IOException("Error writing " + pendingResult.key));
+        }
+    }
+
+    /**
+     * @return a copy of the result pending to be written to the store or null if there is none
+     */
+    AnalysisStoredResult get(ResultStore store, String name) {
+        PendingResult rtn;
+        synchronized (this) {
+            rtn = pending.get(store.getKey(name));
+        }
+        return rtn == null ? null : new AnalysisStoredResult(rtn.result);
+    }
+
+    /**
+     * Removes the result pending to be written to the store, so it is neither served nor retried anymore. When it is
+     * being written at that moment, it waits until the write has finished, so the result can be safely deleted from
+     * the store afterwards
+     *
+     * @return true if the result was pending to be written
+     */
+    synchronized boolean remove(ResultStore store, String name) {
+        String key = store.getKey(name);
+        boolean rtn = pending.remove(key) != null;
+        if (rtn) notifyAll(); //The writer might be waiting to retry it
+        while (writing.stream().anyMatch(pendingResult -> pendingResult.key.equals(key))) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * Waits until all the pending results have been written or have failed to be (they are kept and retried later)
+     */
+    synchronized void flush() {
+        while (pending.values().stream().anyMatch(pendingResult -> pendingResult.attempts == 0)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!pending.isEmpty()) logger.error(String.format("%d results could not be written: %s", pending.size(), pending.keySet()));
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+
+    private void drain() {
+        while (true) {
+            List<PendingResult> batch = new ArrayList<>();
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    notifyAll();
+                    return;
+                }
+                // Kept in pending until written, so they are still served while being written
+                long now = System.currentTimeMillis();
+                long next = Long.MAX_VALUE;
+                for (PendingResult pendingResult : pending.values()) {
+                    if (pendingResult.retryAt <= now) batch.add(pendingResult);
+                    else next = Math.min(next, pendingResult.retryAt);
+                }
+                if (batch.isEmpty()) {
+                    try {
+                        wait(next - now);
+                    } catch (InterruptedException e) {
+                        scheduled = false;
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    continue;
+                }
+                writing = batch;
+            }
+            List<PendingResult> failed;
+            try {
+                failed = ResultDataUtils.kryoSerialisation(batch);
+            } catch (Throwable t) {
+                // Otherwise the thread dies and the results are kept pending forever
+                logger.error("Error writing the pending results", t);
+                failed = batch;
+            }
+            synchronized (this) {
+                writing = Collections.emptyList();
+                for (PendingResult pendingResult : batch) {
+                    if (failed.contains(pendingResult)) {
+                        // Unless it has been removed in the meantime, it is retried later
+                        pendingResult.failed();
+                    } else {
+                        // Unless it has been queued again in the meantime
+                        pending.remove(pendingResult.key, pendingResult);
+                    }
+                }
+                notifyAll();
+            }
+            if (!failed.isEmpty()) logger.warn(String.format("%d results could not be written and will be retried", failed.size()));
+            if (batch.size() > 1) logger.info(String.format("%d results written in batch", batch.size() - failed.size()));
+        }
+    }
+
+    static class PendingResult {
+        final ResultStore store;
+        final String name;
+        final String key;
+        final AnalysisStoredResult result;
+
+        //Only accessed holding the queue monitor
+        int attempts = 0;
+        long retryAt = 0;
+
+        PendingResult(ResultStore store, String name, AnalysisStoredResult result) {
+            this.store = store;
+            this.name = name;
+            this.key = store.getKey(name);
+            this.result = result;
+        }
+
+        void failed() {
+            attempts++;
+            retryAt = System.currentTimeMillis() + Math.min(MAX_RETRY_DELAY, RETRY_DELAY << Math.min(attempts - 1, 6));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.ExpressionMatrix;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.model.identifier.Identifier;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.PathwayNodeSummary;
+import org.reactome.server.analysis.core.result.exception.ResourceGoneException;
+import org.reactome.server.analysis.core.util.MapSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Results are stored in sections, so the statistics can be read without the details of every pathway
+ * <pre>
+ *     [int MAGIC][int VERSION]
+ *     [details of pathway 1] ... [details of pathway n]
+ *     [table: the objects used in the details]
+ *     [head: the result with statistics only pathways]
+ *     [long table offset][long head offset][int n][long details offset of pathway 1] ... [long details offset of pathway n][long head length]
+ *     [long offsets table position][int MAGIC]
+ * </pre>
+ * The table and the head are serialised with Kryo and the details of each pathway only contain the positions (varints)
+ * of the found identifiers, interactors and reactions in the table, so they are stored once no matter the number of
+ * pathways they are found in. Only the head is read to provide the statistics, while the table and the details of a
+ * pathway are read the first time they are needed.
+ * <p>
+ * The identifiers refer to the expression matrix submitted by the user, so the ones in the table and the not found ones
+ * in the head are stored as copies keeping only the rows they use (see ExpressionMatrix.Compaction). Otherwise the whole
+ * matrix would be stored (and read) in both sections.
+ * <p>
+ * PLEASE NOTE: Results stored by previous versions (Kryo serialised as a whole) do not start with MAGIC. They cannot
+ * be read anymore (the stored classes have changed since), so they are considered gone, as the ones stored with a
+ * different VERSION of this format
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+abstract class SectionedResultFile {
+
+    private static final Logger logger = LoggerFactory.getLogger("resultDataUtilsLogger");
+
+    static final int MAGIC = 0x52455331;
+    // Results stored with a different version are considered gone (the stored classes might have changed)
+    private static final int VERSION = 3;
+
+    private static final int FOOTER_LENGTH = Long.BYTES + Integer.BYTES;
+
+    static boolean isSectioned(InputStream is) throws IOException {
+        byte[] aux = new byte[Integer.BYTES];
+        int n = 0, r;
+        while (n < aux.length && (r = is.read(aux, n, aux.length - n)) > 0) n += r;
+        return n == aux.length && new DataInputStream(new ByteArrayInputStream(aux)).readInt() == MAGIC;
+    }
+
+    static void write(Kryo kryo, AnalysisStoredResult result, OutputStream os) throws IOException {
+        AnalysisStoredResult head = result.getStatistics();
+        List<PathwayNodeSummary> pathways = head.getPathways();
+        Table table = new Table();
+
+        CountingOutputStream cos = new CountingOutputStream(os);
+        DataOutputStream out = new DataOutputStream(cos);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        long[] offsets = new long[pathways.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            out.flush();
+            offsets[i] = cos.count;
+            //The details are provided by the result and are not kept by the statistics only copy
+            PathwayNodeData.Details details = pathways.get(i).getData().getDetails();
+            writeMapSet(out, details.getFoundTotal(), table);
+            writeMapSet(out, details.getEntities(), table);
+            writeMapSet(out, details.getReactions(), table);
+            writeMapSet(out, details.getInteractors(), table);
+        }
+        out.flush();
+
+        long tableOffset = cos.count;
+        table.compaction.trim();
+        Output output = new Output(cos);
+        kryo.writeClassAndObject(output, table.objects.toArray());
+        output.flush();
+
+        long headOffset = cos.count;
+        kryo.writeClassAndObject(output, head);
+        output.flush();
+        long headLength = cos.count - headOffset;
+
+        long offsetsPosition = cos.count;
+        out.writeLong(tableOffset);
+        out.writeLong(headOffset);
+        out.writeInt(offsets.length);
+        for (long offset : offsets) out.writeLong(offset);
+        out.writeLong(headLength);
+        out.writeLong(offsetsPosition);
+        out.writeInt(MAGIC);
+        out.flush();
+    }
+
+    /**
+     * PLEASE NOTE: The table is read with a new serialiser (provided by kryo) when the details are first needed
+     *
+     * @throws FileNotFoundException when the result was stored with a different version of the format
+     */
+    static AnalysisStoredResult read(Supplier<Kryo> kryo, ResultStore store, String name) throws IOException {
+        long length = store.length(name);
+        long lastModified = store.lastModified(name);
+        try (DataInputStream header = new DataInputStream(store.read(name, 0, 2 * Integer.BYTES))) {
+            header.readInt();
+            int version = header.readInt();
+            if (version != VERSION) {
+                logger.warn(String.format("%s stored with version %d of the format (current is %d)", store.getKey(name), version, VERSION));
+                throw new FileNotFoundException(store.getKey(name));
+            }
+        }
+        long offsetsPosition;
+        try (DataInputStream footer = new DataInputStream(store.read(name, length - FOOTER_LENGTH, FOOTER_LENGTH))) {
+            offsetsPosition = footer.readLong();
+            if (footer.readInt() != MAGIC) throw new IOException(String.format("%s is truncated", store.getKey(name)));
+        }
+
+        long tableOffset, headOffset, headLength;
+        long[] offsets;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(store.read(name, offsetsPosition, length - FOOTER_LENGTH - offsetsPosition)))) {
+            tableOffset = in.readLong();
+            headOffset = in.readLong();
+            offsets = new long[in.readInt() + 1];
+            for (int i = 0; i < offsets.length - 1; i++) offsets[i] = in.readLong();
+            offsets[offsets.length - 1] = tableOffset; //The details of the last pathway end where the table starts
+            headLength = in.readLong();
+        }
+
+        AnalysisStoredResult rtn;
+        try (Input input = new Input(store.read(name, headOffset, headLength))) {
+            rtn = (AnalysisStoredResult) kryo.get().readClassAndObject(input);
+        }
+        StoredTable table = new StoredTable(kryo, store, name, tableOffset, headOffset - tableOffset);
+
+        List<PathwayNodeSummary> pathways = rtn.getPathways();
+        for (int i = 0; i < pathways.size(); i++) {
+            long offset = offsets[i];
+            long size = offsets[i + 1] - offset;
+            pathways.get(i).getData().setDetailsLoader(() -> readDetails(store, name, lastModified, offset, size, table));
+        }
+        return rtn;
+    }
+
+    private static PathwayNodeData.Details readDetails(ResultStore store, String name, long lastModified, long offset, long length, StoredTable storedTable) {
+        //The result might have been deleted (or replaced) since its statistics were read
+        if (store.lastModified(name) != lastModified) throw new ResourceGoneException();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(store.read(name, offset, length)))) {
+            Object[] table = storedTable.get();
+            return new PathwayNodeData.Details(readMapSet(in, table), readMapSet(in, table), readMapSet(in, table), readMapSet(in, table));
+        } catch (FileNotFoundException e) {
+            throw new ResourceGoneException();
+        } catch (KryoException e) {
+            logger.error(e.getMessage(), e);
+            throw new ResourceGoneException();
+        } catch (IOException e) {
+            logger.error(e.getMessage(), e);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <S, T> void writeMapSet(DataOutputStream out, MapSet<S, T> map, Table table) throws IOException {
+        writeVarInt(out, map.keySet().size());
+        for (S key : map.keySet()) {
+            Set<T> elements = map.getElements(key);
+            writeVarInt(out, table.getPosition(key));
+            writeVarInt(out, elements.size());
+            for (T element : elements) writeVarInt(out, table.getPosition(element));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T> MapSet<S, T> readMapSet(DataInputStream in, Object[] table) throws IOException {
+        MapSet<S, T> rtn = new MapSet<>();
+        int keys = readVarInt(in);
+        for (int i = 0; i < keys; i++) {
+            S key = (S) table[readVarInt(in)];
+            int n = readVarInt(in);
+            Set<T> elements = new HashSet<>(n * 4 / 3 + 1);
+            for (int j = 0; j < n; j++) elements.add((T) table[readVarInt(in)]);
+            rtn.add(key, elements);
+        }
+        return rtn;
+    }
+
+    //Positions are mostly small numbers, so they are written in as few bytes as possible (7 bits per byte)
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int rtn = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            rtn |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return rtn;
+        }
+    }
+
+    /**
+     * Objects used in the details of the pathways (each one kept once). Identifiers are kept as copies that only hold
+     * the expression values of the found ones
+     */
+    @SuppressWarnings("unchecked")
+    private static class Table {
+        final List<Object> objects = new ArrayList<>();
+        final Map<Object, Integer> positions = new IdentityHashMap<>();
+        //Equal strings are kept once even when they are different instances
+        final Map<String, Integer> strings = new HashMap<>();
+        final ExpressionMatrix.Compaction compaction = new ExpressionMatrix.Compaction();
+
+        int getPosition(Object object) {
+            Map<Object, Integer> map = object instanceof String ? (Map) strings : positions;
+            return map.computeIfAbsent(object, o -> {
+                objects.add(copy(o));
+                return objects.size() - 1;
+            });
+        }
+
+        private Object copy(Object object) {
+            if (object instanceof Identifier) return ((Identifier<?>) object).copy(compaction);
+            if (object instanceof AnalysisIdentifier) return compaction.copy((AnalysisIdentifier) object);
+            return object;
+        }
+    }
+
+    /**
+     * The table of a stored result. It is read the first time the details of any of its pathways are needed and it is
+     * only softly referenced, so it does not grow the cached result beyond its weight (it is read again if needed)
+     */
+    private static class StoredTable {
+        private final Supplier<Kryo> kryo;
+        private final ResultStore store;
+        private final String name;
+        private final long offset;
+        private final long length;
+
+        private volatile SoftReference<Object[]> table;
+
+        StoredTable(Supplier<Kryo> kryo, ResultStore store, String name, long offset, long length) {
+            this.kryo = kryo;
+            this.store = store;
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        Object[] get() throws IOException {
+            SoftReference<Object[]> reference = table;
+            Object[] rtn = reference == null ? null : reference.get();
+            if (rtn != null) return rtn;
+            synchronized (this) {
+                reference = table;
+                rtn = reference == null ? null : reference.get();
+                if (rtn == null) {
+                    try (Input input = new Input(store.read(name, offset, length))) {
+                        rtn = (Object[]) kryo.get().readClassAndObject(input);
+                    }
+                    table = new SoftReference<>(rtn);
+                }
+            }
+            return rtn;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
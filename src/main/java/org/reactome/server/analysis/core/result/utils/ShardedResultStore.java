@@ -0,0 +1,29 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import java.io.File;
+
+/**
+ * Result files spread in a two levels tree of 256 folders each ("[directory]/ab/cd/res_[name].bin") based on the
+ * hash of the name, so no folder ends up containing millions of files
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class ShardedResultStore extends FileResultStore {
+
+    public ShardedResultStore(String directory) {
+        super(directory);
+    }
+
+    @Override
+    protected File getFile(String name) {
+        // The hash is spread, so similar names (as consecutive tokens are) do not end up in the same folders
+        String hash = String.format("%04x", (name.hashCode() * 0x9E3779B9) >>> 16);
+        File folder = new File(new File(directory, hash.substring(0, 2)), hash.substring(2, 4));
+        return new File(folder, String.format("res_%s.bin", name));
+    }
+
+    @Override
+    protected int getDepth() {
+        return 3;
+    }
+}
@@ -0,0 +1,167 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes the expired results of a store in the background. The results are indexed by their expiry time (based on
+ * the creation date encoded in the token name), so every sweep only goes through the expired ones. They are deleted
+ * in batches and removed from the md5 to token cache in Tokenizer as well.
+ * <p>
+ * The index is built from the names in the store when the sweeper starts and the new results have to be added to it
+ * (TokenUtils.saveResult does it). Results whose name does not follow the token rule are never deleted.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class TokenSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger("tokenLogger");
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ResultStore store;
+
+    // Result names per expiry time
+    private final TreeMap<Long, Set<String>> expiries = new TreeMap<>();
+    private int indexed = 0;
+
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> task;
+
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong deletedResults = new AtomicLong();
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+    private volatile long lastSweepTime = 0;
+    private volatile long lastSweepDuration = 0;
+
+    public TokenSweeper(ResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Indexes the results in the store and sweeps them periodically (the first time straight away)
+     */
+    public synchronized void start(long period, TimeUnit unit) throws IOException {
+        if (task != null) return;
+        Set<String> names = store.getNames();
+        names.forEach(this::add);
+        logger.info(String.format("%d results indexed by expiry time in %s", indexed, store));
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        task = executor.scheduleWithFixedDelay(() -> {
+            try {
+                sweep();
+            } catch (RuntimeException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }, 0, period, unit);
+    }
+
+    public synchronized void stop() {
+        if (task == null) return;
+        task.cancel(false);
+        executor.shutdown();
+        task = null;
+        executor = null;
+    }
+
+    /**
+     * Adds the result to the index (results not following the token rule are ignored)
+     */
+    public void add(String name) {
+        Long expiry = Tokenizer.getExpiryTime(name);
+        if (expiry == null) return;
+        synchronized (expiries) {
+            if (expiries.computeIfAbsent(expiry, e -> new HashSet<>()).add(name)) indexed++;
+        }
+    }
+
+    /**
+     * Deletes all the results expired at this moment
+     *
+     * @return the number of results deleted
+     */
+    public int sweep() {
+        long start = System.currentTimeMillis();
+        int deleted = 0;
+        long bytes = 0;
+        List<String> batch;
+        while (!(batch = pollExpired(start)).isEmpty()) {
+            for (String name : batch) {
+                long length = store.length(name);
+                if (ResultDataUtils.delete(store, name)) {
+                    deleted++;
+                    bytes += length;
+                }
+                Tokenizer.removeAssociatedName(name);
+            }
+        }
+        sweeps.incrementAndGet();
+        deletedResults.addAndGet(deleted);
+        reclaimedBytes.addAndGet(bytes);
+        lastSweepTime = start;
+        lastSweepDuration = System.currentTimeMillis() - start;
+        if (deleted > 0) {
+            logger.info(String.format("%d expired results deleted from %s (%d bytes reclaimed) in %d ms", deleted, store, bytes, lastSweepDuration));
+        }
+        return deleted;
+    }
+
+    public long getSweeps() {
+        return sweeps.get();
+    }
+
+    public long getDeletedResults() {
+        return deletedResults.get();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+    public long getLastSweepTime() {
+        return lastSweepTime;
+    }
+
+    public long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+
+    /**
+     * @return the number of results waiting to expire
+     */
+    public int getIndexedResults() {
+        synchronized (expiries) {
+            return indexed;
+        }
+    }
+
+    private List<String> pollExpired(long time) {
+        List<String> rtn = new ArrayList<>();
+        synchronized (expiries) {
+            while (rtn.size() < BATCH_SIZE && !expiries.isEmpty() && expiries.firstKey() <= time) {
+                Set<String> names = expiries.firstEntry().getValue();
+                Iterator<String> it = names.iterator();
+                while (rtn.size() < BATCH_SIZE && it.hasNext()) {
+                    rtn.add(it.next());
+                    it.remove();
+                    indexed--;
+                }
+                if (names.isEmpty()) expiries.pollFirstEntry();
+            }
+        }
+        return rtn;
+    }
+}
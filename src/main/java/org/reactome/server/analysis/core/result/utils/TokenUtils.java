@@ -1,16 +1,21 @@
 package org.reactome.server.analysis.core.result.utils;
 
 import org.reactome.server.analysis.core.model.AnalysisType;
+import org.reactome.server.analysis.core.model.DatabaseInfo;
 import org.reactome.server.analysis.core.model.SpeciesNode;
 import org.reactome.server.analysis.core.result.AnalysisStoredResult;
 import org.reactome.server.analysis.core.result.exception.ResourceGoneException;
 import org.reactome.server.analysis.core.result.exception.ResourceNotFoundException;
 import org.reactome.server.analysis.core.result.model.AnalysisSummary;
+import org.reactome.server.analysis.core.result.model.PathwayDelta;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Antonio Fabregat <fabregat@ebi.ac.uk>
@@ -21,6 +26,10 @@ public class TokenUtils {
     private static final Logger logger = LoggerFactory.getLogger("tokenLogger");
 
     private String pathDirectory;
+    // One of ResultStoreFactory.TYPE (FLAT when not set)
+    private String storeType;
+    private ResultStore store;
+    private TokenSweeper sweeper;
 
     public TokenUtils() {
     }
@@ -29,15 +38,50 @@ public class TokenUtils {
         this.pathDirectory = pathDirectory;
     }
 
-    public void setPathDirectory(String pathDirectory) {
+    public TokenUtils(String pathDirectory, String storeType) {
         this.pathDirectory = pathDirectory;
+        this.storeType = storeType;
+    }
+
+    public synchronized void setPathDirectory(String pathDirectory) {
+        this.pathDirectory = pathDirectory;
+        this.store = null;
+    }
+
+    public synchronized void setStoreType(String storeType) {
+        this.storeType = storeType;
+        this.store = null;
+    }
+
+    /**
+     * Deletes the expired results of the store every given number of minutes
+     */
+    public synchronized void startExpirySweeper(long periodMinutes) throws IOException {
+        if (sweeper == null) sweeper = new TokenSweeper(getStore());
+        sweeper.start(periodMinutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized void stopExpirySweeper() {
+        if (sweeper != null) sweeper.stop();
+    }
+
+    /**
+     * @return the sweeper of expired results (null if it has never been started)
+     */
+    public synchronized TokenSweeper getSweeper() {
+        return sweeper;
+    }
+
+    public synchronized ResultStore getStore() {
+        if (store == null) store = ResultStoreFactory.getResultStore(storeType, pathDirectory);
+        return store;
     }
 
     public AnalysisStoredResult getFromToken(String token) {
-        String fileName = getFileName(token);
-        if (fileName != null) {
+        String name = Tokenizer.getName(token);
+        if (name != null) {
             try {
-                return ResultDataUtils.getAnalysisResult(fileName);
+                return ResultDataUtils.getAnalysisResult(getStore(), name);
             } catch (FileNotFoundException e) {
                 //should be alive is only true when the token follows the rule and the resulting date is in the last 7 days
                 if (Tokenizer.shouldBeAlive(token)) {
@@ -48,6 +92,13 @@ public class TokenUtils {
         throw new ResourceNotFoundException();
     }
 
+    /**
+     * @return the differences per pathway between the results of both tokens (see AnalysisStoredResult.compare)
+     */
+    public List<PathwayDelta> compare(String tokenFrom, String tokenTo, String resource, boolean importableOnly) {
+        return getFromToken(tokenFrom).compare(getFromToken(tokenTo), resource, importableOnly);
+    }
+
     public AnalysisSummary getAnalysisSummary(String token, Boolean projection, Boolean interactors, String sampleName,
                                               AnalysisType type, String userFileName, String serverName, boolean includeDisease) {
         if (userFileName != null && !userFileName.isEmpty()) {
@@ -57,18 +108,38 @@ public class TokenUtils {
         }
     }
 
+    /**
+     * @deprecated the key does not change between data releases, so a token kept from a previous release would
+     * be returned (use getFakedMD5(speciesFrom, speciesTo, databaseInfo) instead)
+     */
+    @Deprecated
     public String getFakedMD5(SpeciesNode speciesFrom, SpeciesNode speciesTo) {
         return AnalysisType.SPECIES_COMPARISON.toString() + speciesFrom.getSpeciesID() + "-" + speciesTo.getSpeciesID();
     }
 
+    /**
+     * @return a deterministic key for the comparison of both species in the given data release
+     */
+    public String getFakedMD5(SpeciesNode speciesFrom, SpeciesNode speciesTo, DatabaseInfo databaseInfo) {
+        return getFakedMD5(speciesFrom, speciesTo) + "-" + databaseInfo.getVersion() + "-" + databaseInfo.getChecksum();
+    }
+
+    /**
+     * @return the file name of the result for the file based stores (the key of the result in the store otherwise)
+     */
     public String getFileName(String token) {
         String name = Tokenizer.getName(token);
-        return String.format("%s/res_%s.bin", this.pathDirectory, name);
+        return getStore().getKey(name);
     }
 
+    /**
+     * The result is written in the background, but it can be retrieved with getFromToken straight away
+     */
     public void saveResult(final AnalysisStoredResult result) {
-        String fileName = getFileName(result.getSummary().getToken());
-        ResultDataUtils.kryoSerialisation(result, fileName);
+        String name = Tokenizer.getName(result.getSummary().getToken());
+        ResultDataUtils.kryoSerialisationAsync(result, getStore(), name);
+        TokenSweeper sweeper = getSweeper();
+        if (sweeper != null) sweeper.add(name);
     }
 
 }
@@ -6,15 +6,20 @@ import org.reactome.server.analysis.core.result.exception.ResourceNotFoundExcept
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,25 +30,121 @@ public abstract class Tokenizer {
 
     private static final Logger logger = LoggerFactory.getLogger("tokenizerLogger");
 
-    private static Map<String, String> md5ToToken = new HashMap<String, String>();
+    private static final int MAX_CACHED_TOKENS = 100_000;
 
-    private static Long lastToken = 1L;
+    // The cache file is rewritten once this number of changes have been appended to it
+    static int COMPACT_AFTER_LINES = MAX_CACHED_TOKENS;
+
+    // Looked up without locking (see getOrCreateToken)
+    private static final Map<String, String> md5ToToken = new ConcurrentHashMap<>();
+
+    // Reverse index from the token name (as it is in the result file name) to the md5ToToken key
+    private static final Map<String, String> nameToKey = new ConcurrentHashMap<>();
+
+    // [key, token] in insertion order, so the eldest entries are also the first ones to expire (see evict)
+    private static final Queue<String[]> order = new ConcurrentLinkedQueue<>();
+
+    // When set, every change in md5ToToken is appended to the file, so the cached tokens survive restarts
+    private static volatile CacheFileAppender appender;
+
+    private static final AtomicLong lastToken = new AtomicLong(1L);
 
     private static final int DAYS_TO_LIVE = 7;
 
     private static final String DATE_PATTERN = "yyyyMMddHHmmss";
 
+    private static final Pattern RESULT_FILE_PATTERN = Pattern.compile("res_(.*?).bin");
+
+    /**
+     * PLEASE NOTE: The existing tokens are looked up without locking and only the creation of a token is atomic (per
+     * key), so concurrent requests for the same md5 get the same token
+     */
     public static String getOrCreateToken(String md5, boolean toHuman, boolean includeInteractors){
-        String token = md5ToToken.get(md5 + toHuman + includeInteractors);
+        String key = md5 + toHuman + includeInteractors;
+        String token = getAliveToken(key);
         if(token==null){
-            token = getToken();
-            md5ToToken.put(md5 + toHuman + includeInteractors, token);
+            String[] replaced = new String[1];
+            String[] created = new String[1];
+            token = md5ToToken.compute(key, (k, current) -> {
+                if (current != null && shouldBeAlive(current)) return current;
+                replaced[0] = current;
+                return created[0] = getToken();
+            });
+            if (token.equals(created[0])) {
+                if (replaced[0] != null) nameToKey.remove(getName(replaced[0]), key);
+                nameToKey.put(getName(token), key);
+                order.add(new String[]{key, token});
+                persist(key, token);
+                evict();
+            }
         }
         return token;
     }
 
     public static boolean hasToken(String md5, boolean toHuman, boolean includeInteractors){
-        return md5ToToken.containsKey(md5 + toHuman + includeInteractors);
+        return getAliveToken(md5 + toHuman + includeInteractors) != null;
+    }
+
+    /**
+     * Loads the md5 to token entries kept in the file (skipping the expired ones) and appends every change to it
+     * from now on (including the evicted entries). The file is rewritten on load, so it only contains the entries
+     * that are still alive. The changes are appended in the background, so the tokens are not waiting for the disk.
+     * The file is rewritten in the background as well once COMPACT_AFTER_LINES changes have been appended or when
+     * a change could not be appended (see CacheFileAppender), so it does not grow for the whole uptime.
+     *
+     * @param fileName the file where the cached tokens are kept
+     */
+    public static synchronized void setCacheFile(String fileName){
+        closeCacheFile();
+        Path path = Paths.get(fileName);
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab < 0) continue;
+                    String key = line.substring(0, tab);
+                    String token = line.substring(tab + 1);
+                    try {
+                        if (key.isEmpty()) {
+                            remove(getName(token));
+                        } else if (shouldBeAlive(token)) {
+                            add(key, token);
+                        }
+                    } catch (RuntimeException e) {
+                        logger.warn(String.format("Skipping wrong cached token '%s'", token));
+                    }
+                }
+            } catch (IOException e) {
+                logger.error(String.format("Cached tokens could not be loaded from '%s'", fileName), e);
+            }
+        }
+
+        try {
+            writeCacheFile(path);
+            appender = new CacheFileAppender(path, Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.APPEND));
+            logger.info(String.format("%d cached tokens loaded from '%s'", md5ToToken.size(), fileName));
+        } catch (IOException e) {
+            logger.error(String.format("Cached tokens could not be written to '%s'", fileName), e);
+        }
+    }
+
+    /**
+     * Stops appending the changes to the cache file (the ones pending to be appended are written first)
+     */
+    public static synchronized void closeCacheFile(){
+        CacheFileAppender appender = Tokenizer.appender;
+        Tokenizer.appender = null;
+        if (appender != null) appender.close();
+    }
+
+    /**
+     * @return the number of changes that could not be appended to the cache file because there were too many
+     * waiting (the file is rewritten afterwards, so they are not lost)
+     */
+    public static long getDroppedCacheLines(){
+        CacheFileAppender appender = Tokenizer.appender;
+        return appender == null ? 0 : appender.dropped.get();
     }
 
     public static String getName(String token){
@@ -64,29 +165,36 @@ public abstract class Tokenizer {
     }
 
     public static boolean removeAssociatedToken(String fileName){
-        Pattern pattern = Pattern.compile("res_(.*?).bin");
-        Matcher matcher = pattern.matcher(fileName);
-        String token = null;
+        Matcher matcher = RESULT_FILE_PATTERN.matcher(fileName);
+        String name = null;
         if (matcher.find()){
-            token = matcher.group(1);
-            logger.trace(String.format("'%s' candidate to be deleted from the map (if exists)", token));
+            name = matcher.group(1);
+            logger.trace(String.format("'%s' candidate to be deleted from the map (if exists)", name));
         }
 
-        if(token!=null){
-            for (String md5 : md5ToToken.keySet()) {
-                if(md5ToToken.get(md5).equals(token)){
-                    md5ToToken.remove(md5);
-                    logger.info(String.format("'%s' has been deleted from the map", token));
-                    return true;
-                }
-            }
-            logger.trace(String.format("'%s' not found in the map... (it could be because the server was restarted)", token));
+        if(name!=null){
+            return removeAssociatedName(name);
         }else{
             logger.warn("%s has never been a result file. Check the configuration.");
         }
         return false;
     }
 
+    /**
+     * @param name the token name (see getName)
+     * @return true if there was a cached token with that name
+     */
+    public static boolean removeAssociatedName(String name){
+        String token = remove(name);
+        if (token != null) {
+            persist("", token);
+            logger.info(String.format("'%s' has been deleted from the map", token));
+            return true;
+        }
+        logger.trace(String.format("'%s' not found in the map... (it could be because the server was restarted)", name));
+        return false;
+    }
+
     public static boolean shouldBeAlive(String token){
         boolean rtn = false;
         DateTime now = new DateTime(System.currentTimeMillis());
@@ -98,10 +206,97 @@ public abstract class Tokenizer {
         return rtn;
     }
 
-    private static synchronized String getToken(){
+    /**
+     * @param name the token name (see getName)
+     * @return the time (in milliseconds) from which the token is not alive anymore or null if the name does not
+     * follow the rule
+     */
+    public static Long getExpiryTime(String name){
+        DateTime date = getNameDate(name);
+        return date == null ? null : date.plusDays(DAYS_TO_LIVE + 1).getMillis();
+    }
+
+    private static String getAliveToken(String key){
+        String token = md5ToToken.get(key);
+        if (token != null && !shouldBeAlive(token)) {
+            remove(getName(token));
+            token = null;
+        }
+        return token;
+    }
+
+    /**
+     * Adds the entry to both maps (only used while loading the cache file)
+     */
+    private static void add(String key, String token){
+        String old = md5ToToken.put(key, token);
+        if (token.equals(old)) return;
+        if (old != null) nameToKey.remove(getName(old), key);
+        nameToKey.put(getName(token), key);
+        order.add(new String[]{key, token});
+        evict();
+    }
+
+    /**
+     * Evicts the expired entries and, when the maximum size is reached, the eldest ones. The evictions are appended
+     * to the cache file, so the evicted tokens are not back after a restart
+     */
+    private static void evict(){
+        synchronized (order) {
+            String[] eldest;
+            while ((eldest = order.peek()) != null) {
+                String token = md5ToToken.get(eldest[0]);
+                if (!eldest[1].equals(token)) {
+                    order.poll(); //Replaced or removed since it was added
+                    continue;
+                }
+                if (md5ToToken.size() <= MAX_CACHED_TOKENS && shouldBeAlive(token)) break;
+                order.poll();
+                if (md5ToToken.remove(eldest[0], token)) {
+                    nameToKey.remove(getName(token), eldest[0]);
+                    persist("", token);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name the token name (as it is in the result file name)
+     * @return the removed token or null if there was not a token with that name
+     */
+    private static String remove(String name){
+        String key = nameToKey.remove(name);
+        if (key == null) return null;
+        String token = md5ToToken.get(key);
+        //The key might have a new token by now
+        return token != null && getName(token).equals(name) && md5ToToken.remove(key, token) ? token : null;
+    }
+
+    /**
+     * Queues the entry to be appended to the cache file (an empty key stands for the token removal)
+     */
+    private static void persist(String key, String token){
+        CacheFileAppender appender = Tokenizer.appender;
+        if (appender != null) appender.append(key + "\t" + token + "\n");
+    }
+
+    /**
+     * Writes the cached entries to the file (through a temporary one, so the file is replaced atomically)
+     */
+    private static void writeCacheFile(Path path) throws IOException {
+        Path tmp = Paths.get(path + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String[] entry : order) {
+                if (entry[1].equals(md5ToToken.get(entry[0]))) writer.write(entry[0] + "\t" + entry[1] + "\n");
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String getToken(){
         SimpleDateFormat sdf = new SimpleDateFormat(DATE_PATTERN);
         String current = sdf.format(System.currentTimeMillis());
-        String token = current + "_" + lastToken++;
+        String token = current + "_" + lastToken.getAndIncrement();
         token = Base64.getEncoder().encodeToString(token.getBytes());
         try {
             return URLEncoder.encode(token, "UTF-8");
@@ -111,8 +306,11 @@ public abstract class Tokenizer {
     }
 
     private static DateTime getTokenDate(String token){
+        return getNameDate(Tokenizer.getName(token));
+    }
+
+    private static DateTime getNameDate(String name){
         DateTime date = null;
-        String name = Tokenizer.getName(token);
         if(name.contains("_")){
             String d =  name.split("_")[0];
             DateFormat df = new SimpleDateFormat(DATE_PATTERN);
@@ -124,4 +322,106 @@ public abstract class Tokenizer {
         }
         return date;
     }
-}
\ No newline at end of file
+
+    /**
+     * Appends the changes to the cache file in the background. The file is flushed every time there are no more
+     * changes waiting, so the lines are written in batches when there are many. The changes are never waited for:
+     * when there are too many waiting the new ones are dropped (and counted).
+     * <p>
+     * Once COMPACT_AFTER_LINES changes have been appended, or after a change has been dropped, the file is rewritten
+     * from the cached entries the next time there are no changes waiting. The changes still waiting at that point
+     * are discarded because the cached entries already contain them.
+     */
+    private static class CacheFileAppender {
+
+        private static final int MAX_PENDING_LINES = 10_000;
+
+        // Marks the end of the changes to append (compared by identity)
+        private static final String CLOSE = new String();
+
+        private final Path file;
+        private final Writer writer;
+        private final BlockingQueue<String> lines = new LinkedBlockingQueue<>(MAX_PENDING_LINES);
+        private final Thread thread;
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long droppedWhenCompacted = 0;
+        private volatile boolean failed = false;
+        private boolean closed = false;
+        private int appended = 0;
+
+        CacheFileAppender(Path file, Writer writer) {
+            this.file = file;
+            this.writer = writer;
+            this.thread = new Thread(this::run, "tokenizer-cache-writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        void append(String line) {
+            if (failed) return;
+            if (!lines.offer(line) && dropped.incrementAndGet() == droppedWhenCompacted + 1) {
+                logger.warn(String.format("Cached tokens are not appended to '%s' for the moment (it will be rewritten)", file));
+            }
+        }
+
+        void close() {
+            try {
+                if (!failed) lines.put(CLOSE);
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void run() {
+            Writer writer = this.writer;
+            try {
+                String line;
+                while (!closed && (line = lines.take()) != CLOSE) {
+                    writer.write(line);
+                    appended++;
+                    if (lines.isEmpty()) {
+                        if (appended >= COMPACT_AFTER_LINES || dropped.get() > droppedWhenCompacted) {
+                            writer = compact(writer);
+                        } else {
+                            writer.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                logger.error(String.format("Cached tokens cannot be written to '%s' anymore", file), e);
+                failed = true;
+                lines.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    logger.error(String.format("Cached tokens could not be written to '%s'", file), e);
+                }
+            }
+        }
+
+        /**
+         * Rewrites the file from the cached entries
+         *
+         * @return the writer appending to the rewritten file
+         */
+        private Writer compact(Writer writer) throws IOException {
+            writer.close();
+            long dropped = this.dropped.get();
+            //Every change waiting has already been applied to the cached entries written below
+            List<String> discarded = new ArrayList<>();
+            lines.drainTo(discarded);
+            for (String line : discarded) {
+                if (line == CLOSE) closed = true;
+            }
+            writeCacheFile(file);
+            appended = 0;
+            droppedWhenCompacted = dropped;
+            logger.info(String.format("Cached tokens file '%s' rewritten", file));
+            return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+    }
+}
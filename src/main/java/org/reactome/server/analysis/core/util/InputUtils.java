@@ -35,7 +35,25 @@ public abstract class InputUtils {
     }
 
     public static UserData getUserData(InputStream is) throws IOException, ParserException {
-        return getUserData(IOUtils.toString(is));
+        return getUserData(is, false);
+    }
+
+    /**
+     * The data is parsed while it is read, digesting it at the same time
+     *
+     * @param contentMD5 true to use the MD5 of the parsed content (see InputFormat.getContentMD5) instead of
+     *                   the one of the submitted bytes, so equivalent submissions can reuse the same token
+     */
+    public static UserData getUserData(InputStream is, boolean contentMD5) throws IOException, ParserException {
+        InputFormat parser = new InputFormat();
+        String md5;
+        if (contentMD5) {
+            parser.parseData(is);
+            md5 = parser.getContentMD5();
+        } else {
+            md5 = parser.parseDataWithMD5(is);
+        }
+        return getUserData(parser, md5);
     }
 
     public static ExternalAnalysisResult getExternalAnalysisResult(String input) throws IOException {
@@ -64,14 +82,15 @@ public abstract class InputUtils {
         if(line==null || line.isEmpty()) return rtn;
         String[] data = line.split("\\t");
         if(data.length>0){
-            rtn = new AnalysisIdentifier(data[0].trim());
+            double[] exp = new double[data.length - 1];
             for(int i=1; i<data.length; ++i){
                 try{
-                    rtn.add(Double.valueOf(data[i].trim()));
+                    exp[i - 1] = Double.parseDouble(data[i].trim());
                 }catch (NumberFormatException nfe){
-                    rtn.add(null); //null won't be taken into account for the AVG
+                    exp[i - 1] = Double.NaN; //missing values won't be taken into account for the AVG
                 }
             }
+            rtn = new AnalysisIdentifier(data[0].trim(), exp);
         }
         return rtn;
     }
@@ -79,7 +98,10 @@ public abstract class InputUtils {
     private static UserData processData(String data, String md5) throws IOException, ParserException {
         InputFormat parser = new InputFormat();
         parser.parseData(data);
+        return getUserData(parser, md5);
+    }
 
+    private static UserData getUserData(InputFormat parser, String md5) {
         return new UserData(parser.getHeaderColumnNames(), parser.getAnalysisIdentifierSet(), md5, parser.getWarningResponses());
     }
 }
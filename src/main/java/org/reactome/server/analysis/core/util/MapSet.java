@@ -61,6 +61,15 @@ public class MapSet<S,T> implements Serializable {
         return rtn;
     }
 
+    /**
+     * Iterates over the elements without copying them into a new set, so it is the one to use when the
+     * elements are only traversed. PLEASE NOTE: Unlike values, an element contained in several sets is
+     * returned once per set.
+     */
+    public Iterable<T> elements() {
+        return () -> map.values().stream().flatMap(Set::stream).iterator();
+    }
+
     public int elementsCount() {
         return map.values().stream().mapToInt(Set::size).sum();
     }
@@ -0,0 +1,155 @@
+package org.reactome.server.analysis.core.methods;
+
+import junit.framework.TestCase;
+import org.reactome.server.analysis.core.data.AnalysisData;
+import org.reactome.server.analysis.core.data.HierarchiesDataContainer;
+import org.reactome.server.analysis.core.model.*;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.util.*;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class EnrichmentAnalysisTest extends TestCase {
+
+    private static final int ENTITIES = 10;
+
+    private final MainResource uniprot = ResourceFactory.getMainResource("UNIPROT");
+    private final SpeciesNode human = SpeciesNodeFactory.getHumanNode();
+
+    private EnrichmentAnalysis enrichmentAnalysis;
+    private List<Set<AnalysisIdentifier>> samples;
+
+    @Override
+    protected void setUp() throws Exception {
+        IdentifiersMap<EntityNode> entitiesMap = new IdentifiersMap<>();
+        for (int i = 0; i < ENTITIES; i++) {
+            EntityNode node = new EntityNode(human, uniprot, "P" + i, new ArrayList<>());
+            node.addPathwayReactions(getPathwayReactions(i));
+            entitiesMap.add("P" + i, uniprot, node);
+        }
+        enrichmentAnalysis = new EnrichmentAnalysis(new AnalysisData() {
+            @Override
+            public IdentifiersMap<EntityNode> getEntitiesMap() {
+                return entitiesMap;
+            }
+
+            @Override
+            public IdentifiersMap<InteractorNode> getInteractorsMap() {
+                return new IdentifiersMap<>();
+            }
+        });
+
+        samples = new ArrayList<>();
+        samples.add(getSample("P0", "P1", "P2", "X0"));
+        samples.add(getSample("P1", "P3", "P5", "P7"));
+        samples.add(getSample("P0", "P1", "P2", "P3", "P4", "P5", "P6", "P7", "P8", "P9", "X0", "X1"));
+    }
+
+    public void testBatchSameAsOneByOne() {
+        List<HierarchiesData> expected = new ArrayList<>();
+        for (Set<AnalysisIdentifier> sample : samples) {
+            HierarchiesDataContainer.put(getHierarchiesData());
+            expected.add(enrichmentAnalysis.overRepresentation(sample, null, false));
+        }
+
+        for (int i = 0; i < samples.size(); i++) HierarchiesDataContainer.put(getHierarchiesData());
+        List<HierarchiesData> batch = enrichmentAnalysis.overRepresentation(samples, null, false);
+
+        assertEquals(expected.size(), batch.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameResult(expected.get(i), batch.get(i));
+        }
+    }
+
+    public void testBatchHandedToTheConsumer() {
+        List<HierarchiesData> expected = new ArrayList<>();
+        for (Set<AnalysisIdentifier> sample : samples) {
+            HierarchiesDataContainer.put(getHierarchiesData());
+            expected.add(enrichmentAnalysis.overRepresentation(sample, null, false));
+        }
+
+        //Only one copy of the hierarchies is in the pool at a time, so the next one is put when the previous is handed
+        List<HierarchiesData> consumed = new ArrayList<>();
+        HierarchiesDataContainer.put(getHierarchiesData());
+        enrichmentAnalysis.overRepresentation(samples, null, false, hierarchiesData -> {
+            consumed.add(hierarchiesData);
+            HierarchiesDataContainer.put(getHierarchiesData());
+        });
+        assertNotNull(HierarchiesDataContainer.take());
+
+        assertEquals(expected.size(), consumed.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameResult(expected.get(i), consumed.get(i));
+        }
+    }
+
+    private static void assertSameResult(HierarchiesData expected, HierarchiesData actual) {
+        assertEquals(expected.getNotFound(), actual.getNotFound());
+        Map<String, PathwayNodeData> expectedPathways = getHitPathways(expected);
+        Map<String, PathwayNodeData> actualPathways = getHitPathways(actual);
+        assertFalse(expectedPathways.isEmpty());
+        assertEquals(expectedPathways.keySet(), actualPathways.keySet());
+        for (String stId : expectedPathways.keySet()) {
+            PathwayNodeData e = expectedPathways.get(stId);
+            PathwayNodeData a = actualPathways.get(stId);
+            assertEquals(e.getFoundEntities(), a.getFoundEntities());
+            assertEquals(e.getEntitiesFound(), a.getEntitiesFound());
+            assertEquals(e.getEntitiesPValue(), a.getEntitiesPValue());
+            assertEquals(e.getEntitiesFDR(), a.getEntitiesFDR());
+            assertEquals(e.getReactionsFound(), a.getReactionsFound());
+        }
+    }
+
+    private static Map<String, PathwayNodeData> getHitPathways(HierarchiesData hierarchiesData) {
+        Map<String, PathwayNodeData> rtn = new HashMap<>();
+        for (PathwayNode pathway : hierarchiesData.getUniqueHitPathways(null)) {
+            rtn.put(pathway.getStId(), pathway.getPathwayNodeData());
+        }
+        return rtn;
+    }
+
+    /**
+     * The even entities are in the pathway 1, the odd ones in the pathway 2 and the first four in both
+     */
+    private static MapSet<Long, AnalysisReaction> getPathwayReactions(int entity) {
+        MapSet<Long, AnalysisReaction> rtn = new MapSet<>();
+        if (entity % 2 == 0 || entity < 4) rtn.add(1L, new AnalysisReaction(10L + entity, "R-HSA-1" + entity));
+        if (entity % 2 == 1 || entity < 4) rtn.add(2L, new AnalysisReaction(20L + entity, "R-HSA-2" + entity));
+        return rtn;
+    }
+
+    /**
+     * @return a clean copy of the hierarchies (the way HierarchiesDataProducer provides them)
+     */
+    private HierarchiesData getHierarchiesData() {
+        PathwayHierarchy hierarchy = new PathwayHierarchy(human);
+        MapSet<Long, PathwayNode> locations = new MapSet<>();
+        for (long pathwayId = 1; pathwayId <= 2; pathwayId++) {
+            PathwayRoot pathway = new PathwayRoot(hierarchy, "R-HSA-" + pathwayId, pathwayId, "Pathway " + pathwayId, true, false);
+            hierarchy.getChildren().add(pathway);
+            locations.add(pathwayId, pathway);
+        }
+        for (int i = 0; i < ENTITIES; i++) {
+            MapSet<Long, AnalysisReaction> reactions = getPathwayReactions(i);
+            MainIdentifier identifier = new MainIdentifier(uniprot, new AnalysisIdentifier("P" + i));
+            for (Long pathwayId : reactions.keySet()) {
+                for (PathwayNode pathway : locations.getElements(pathwayId)) {
+                    pathway.process(identifier, reactions.getElements(pathwayId));
+                }
+            }
+        }
+        hierarchy.setCountersAndCleanUp();
+        return new HierarchiesData(Collections.singletonMap(human, hierarchy), locations);
+    }
+
+    private static Set<AnalysisIdentifier> getSample(String... identifiers) {
+        Set<AnalysisIdentifier> rtn = new HashSet<>();
+        for (String identifier : identifiers) rtn.add(new AnalysisIdentifier(identifier));
+        return rtn;
+    }
+}
@@ -0,0 +1,34 @@
+package org.reactome.server.analysis.core.model;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class AnalysisIdentifierTest extends TestCase {
+
+    public void testExpressionValuesFromTheConstructors() {
+        AnalysisIdentifier fromArray = new AnalysisIdentifier("P1", new double[]{1.0, Double.NaN, 3.0});
+        AnalysisIdentifier fromList = new AnalysisIdentifier("P1", Arrays.asList(1.0, null, 3.0));
+        assertEquals(Arrays.asList(1.0, null, 3.0), fromArray.getExp());
+        assertEquals(fromArray.getExp(), fromList.getExp());
+        assertEquals(0, new AnalysisIdentifier("P1", new double[0]).getExpSize());
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testAddedValuesNotShared() {
+        ExpressionMatrix matrix = new ExpressionMatrix(2);
+        int row = matrix.addRow();
+        matrix.set(row, 0, 1.0);
+        matrix.set(row, 1, 2.0);
+        AnalysisIdentifier shared = new AnalysisIdentifier("P1", matrix, row);
+        AnalysisIdentifier identifier = new AnalysisIdentifier(shared);
+
+        identifier.add(3.0);
+        identifier.add(null);
+        assertEquals(Arrays.asList(1.0, 2.0, 3.0, null), identifier.getExp());
+        assertEquals(Arrays.asList(1.0, 2.0), shared.getExp());
+    }
+}
@@ -0,0 +1,318 @@
+package org.reactome.server.analysis.core.parser;
+
+import junit.framework.TestCase;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.parser.exception.ParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class InputFormatTest extends TestCase {
+
+    private static final String[] INPUTS = {
+            "#id\tcol1\tcol2\nP1\t1\t2\nP2\t3\t4\n",
+            //CRLF, CR only, a missing last line break and trailing white spaces
+            "#id\tcol1\tcol2\r\nP1\t1\t2\r\nP2\t3\t4\r\n",
+            "#id\tcol1\r\nP1\t1\r\n\r\nP2\t3",
+            "#id\tcol1\rP1\t1\rP2\t3\r",
+            "#id\tcol1\nP1\t1 \t\nP2\t3\t \n",
+            //Empty and blank lines at the beginning, in the middle and at the end
+            "\n\n#id\tcol1\nP1\t1\n\n  \nP2\t3\n\n\n\n",
+            "#id\tcol1\nP1\t1\nP2\t3\n\r\n\r\n",
+            //Header only, one line and no content
+            "#id\tcol1\tcol2\n",
+            "#id\tcol1\tcol2\n\n\n",
+            "P1 P2,P3;P4\tP5\n",
+            "\n\nP1 P2\n\n",
+            "",
+            "\n\n \n",
+            //No header, potential header, duplicates, wrong values and wrong number of columns
+            "P1 1 2\nP2 3 4\n",
+            "gene a b\nP1 1 2\n",
+            "#id\tcol1\nP1\t1\nP1\t2\nP2\tx\nP3\t1e400\nP4\tNaN\n",
+            "#id\tcol1\nP1\t1\nP2\t3\t4\nP3\n",
+            "P1\nP2\nP1\n\nP3\n"
+    };
+
+    public void testParseDoubleBoundaries() {
+        String[] values = {
+                "0", "-0", "+0", "-0.0", "0.000", "1.", ".5", "-.5", "+1.5", "1.5e3", "1.5E+3", "2.5E-3", "1e0", "1e-0",
+                "000123.4500", "0000.0001", "0.1", "0.3", "7d", "7f", "1.5D", "-2.75F",
+                //15 and 16 significant digits
+                "123456789012345", "1234567890123456", "0.123456789012345", "0.1234567890123456",
+                "999999999999999", "9999999999999999", "9007199254740993", "12345678901234567890123",
+                "1.00000000000000000000", "0.000000000000000000000000001",
+                //Exponents around 22
+                "1e22", "1e23", "1e-22", "1e-23", "9e22", "9e-22", "123e20", "123e21", "1.5e-21", "1.5e-22",
+                "123456789012345e8", "123456789012345e-8", "1234567890123456e8",
+                //Out of range and limits
+                "1e400", "-1e400", "1e-400", "4.9e-324", "2.2250738585072014E-308", "1.7976931348623157e308",
+                "Infinity", "-Infinity", "+Infinity", "NaN", "-NaN", "+NaN"
+        };
+        for (String value : values) {
+            assertSameDouble(value);
+        }
+    }
+
+    public void testParseDoubleRandom() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder value = new StringBuilder();
+            if (random.nextBoolean()) value.append(random.nextBoolean() ? '-' : '+');
+            int digits = 1 + random.nextInt(20);
+            int point = random.nextInt(digits + 1);
+            for (int j = 0; j < digits; j++) {
+                if (j == point) value.append('.');
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) value.append('e').append(random.nextInt(61) - 30);
+            assertSameDouble(value.toString());
+        }
+    }
+
+    public void testParseDoubleNotANumber() {
+        String[] values = {"", "-", "+", ".", "-.", "e5", "1e", "1e+", "1e-", "abc", "1.2.3", "1,5", "--1", "1e5.5",
+                           "1 ", " 1", "Infinityx", "infinity", "NaNx", "nan", "1dd", "1x"};
+        for (String value : values) {
+            assertTrue(value, Double.isNaN(InputFormat.parseDouble(value)));
+            assertNull(value, new InputFormat().parseValue(value));
+        }
+    }
+
+    /**
+     * PLEASE NOTE: Unlike Double.parseDouble, the hexadecimal floating point literals are not accepted
+     */
+    public void testParseDoubleHexadecimal() {
+        assertEquals(8.0, Double.parseDouble("0x1p3"));
+        assertTrue(Double.isNaN(InputFormat.parseDouble("0x1p3")));
+        assertNull(new InputFormat().parseValue("0x1p3"));
+        assertNull(new InputFormat().parseValue("0x1.8P1"));
+    }
+
+    /**
+     * PLEASE NOTE: A NaN expression value is accepted but kept as a missing one (Double.NaN stands for a missing
+     * value in ExpressionMatrix), so it is null in the expression values of the identifier
+     */
+    public void testNaNAsMissingValue() throws Exception {
+        assertTrue(Double.isNaN(new InputFormat().parseValue("NaN")));
+
+        InputFormat format = new InputFormat();
+        format.parseData("#id\tcol1\tcol2\nP1\tNaN\t1.5\nP2\t2\t3\n");
+        assertTrue(format.getWarningResponses().isEmpty());
+        Iterator<AnalysisIdentifier> it = format.getAnalysisIdentifierSet().iterator();
+        AnalysisIdentifier p1 = it.next();
+        assertEquals("P1", p1.getId());
+        assertNull(p1.getExp().get(0));
+        assertEquals(1.5, p1.getExp().get(1));
+        assertTrue(Double.isNaN(p1.getExpValue(0)));
+        assertEquals(2.0, it.next().getExp().get(0));
+    }
+
+    public void testStreamingSameAsString() throws Exception {
+        for (String input : INPUTS) {
+            String expected = parse(input, f -> f.parseData(input));
+            assertEquals(input, expected, parse(input, f -> f.parseData(new StringReader(input))));
+            assertEquals(input, expected, parse(input, f -> f.parseData(new ByteArrayInputStream(input.getBytes(Charset.defaultCharset())))));
+            assertEquals(input, expected, parse(input, f -> f.parseData(Channels.newChannel(new ByteArrayInputStream(input.getBytes(Charset.defaultCharset()))))));
+            //Lines (and CRLF) split between reads
+            for (int chars = 1; chars <= 3; chars++) {
+                int max = chars;
+                assertEquals(input, expected, parse(input, f -> f.parseData(new TrickleReader(input, max))));
+            }
+        }
+    }
+
+    /**
+     * The lines are split by \\r?\\n, so the expected results do not depend on the LineReader
+     */
+    public void testLineBreaks() throws Exception {
+        String lf = parse("", f -> f.parseData(new StringReader("#id\tcol1\nP1\t1\n\nP2\t3\n")));
+        assertEquals(lf, parse("", f -> f.parseData(new TrickleReader("#id\tcol1\r\nP1\t1\r\n\r\nP2\t3\r\n", 1))));
+        assertTrue(lf, lf.contains("P1 [1.0]\nP2 [3.0]\n"));
+        assertEquals(1, count(lf, "Line 3 is empty"));
+
+        //Trailing empty lines are not reported
+        InputFormat format = new InputFormat();
+        format.parseData(new StringReader("#id\tcol1\r\nP1\t1\r\nP2\t3\r\n\r\n\r\n"));
+        assertTrue(format.getWarningResponses().isEmpty());
+        assertEquals(2, format.getAnalysisIdentifierSet().size());
+
+        //Header only (taken as a one line file starting with #)
+        format = new InputFormat();
+        try {
+            format.parseData(new StringReader("#id\tcol1\tcol2\r\n\r\n"));
+            fail("A header without content is not valid");
+        } catch (ParserException e) {
+            assertEquals(1, e.getErrorMessages().size());
+            assertTrue(format.getAnalysisIdentifierSet().isEmpty());
+        }
+    }
+
+    public void testStreamingLongLines() throws Exception {
+        //Lines longer than the buffer of the LineReader
+        StringBuilder input = new StringBuilder("#id");
+        for (int i = 0; i < 2000; i++) input.append("\tcol").append(i);
+        input.append("\r\n");
+        for (int r = 0; r < 10; r++) {
+            input.append("P").append(r);
+            for (int i = 0; i < 2000; i++) input.append("\t").append(r * 0.5 + i);
+            input.append("\r\n");
+        }
+        String content = input.toString();
+        String expected = parse(content, f -> f.parseData(content));
+        assertEquals(expected, parse(content, f -> f.parseData(new StringReader(content))));
+        assertEquals(expected, parse(content, f -> f.parseData(new TrickleReader(content, 1000))));
+    }
+
+    public void testStreamingConsumer() throws Exception {
+        String input = "#id\tcol1\nP1\t1\nP2\t2\nP1\t3\nP3\t4\n";
+        List<String> consumed = new ArrayList<>();
+        InputFormat format = new InputFormat();
+        format.parseData(new StringReader(input), identifier -> consumed.add(identifier.getId()));
+        assertEquals(Arrays.asList("P1", "P2", "P3"), consumed);
+    }
+
+    public void testStreamingMD5() throws Exception {
+        String input = "#id\tcol1\r\nP1\t1\r\nP2\t2\r\n";
+        byte[] bytes = input.getBytes(Charset.defaultCharset());
+        InputFormat format = new InputFormat();
+        assertEquals(DigestUtils.md5Hex(bytes), format.parseDataWithMD5(new ByteArrayInputStream(bytes)));
+        assertEquals(parse(input, f -> f.parseData(input)), describe(format, null));
+    }
+
+    public void testParallelSameAsSequential() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            //Small contents are parsed sequentially
+            for (String input : INPUTS) {
+                assertEquals(input, parse(input, f -> f.parseData(input)), parse(input, f -> f.parseData(input, executor)));
+            }
+            for (String lineBreak : new String[]{"\n", "\r\n"}) {
+                for (int seed = 0; seed < 2; seed++) {
+                    String input = getBigInput(new Random(seed), lineBreak, seed == 1);
+                    assertEquals(parse(input, f -> f.parseData(input)), parse(input, f -> f.parseData(input, executor)));
+                }
+            }
+            //Blocks of empty lines, so some chunks start or end with empty lines (reported only when followed by content)
+            StringBuilder blocks = new StringBuilder("#id\tcol1\r\n");
+            for (int block = 0; blocks.length() < 3_000_000; block++) {
+                for (int i = 0; i < 20_000; i++) blocks.append("P").append(block).append("_").append(i).append('\t').append(i).append("\r\n");
+                for (int i = 0; i < 100_000; i++) blocks.append("\r\n");
+            }
+            String input = blocks.toString();
+            assertEquals(parse(input, f -> f.parseData(input)), parse(input, f -> f.parseData(input, executor)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return a content of several MB (so it is split in chunks) with lines of different lengths, so the chunks
+     * are not split at the same place of a line, and with empty lines, duplicates and wrong lines everywhere
+     */
+    private static String getBigInput(Random random, String lineBreak, boolean withErrors) {
+        StringBuilder rtn = new StringBuilder("#id\tcol1\tcol2").append(lineBreak);
+        while (rtn.length() < 5_000_000) {
+            if (random.nextInt(100) < 3) {
+                for (int i = random.nextInt(4); i >= 0; i--) rtn.append(random.nextBoolean() ? "" : " \t").append(lineBreak);
+            }
+            int type = random.nextInt(100);
+            String id = "P" + random.nextInt(type < 10 ? 100 : 1_000_000);
+            StringBuilder padding = new StringBuilder();
+            for (int i = random.nextInt(40); i > 0; i--) padding.append(' ');
+            rtn.append(id).append('\t').append(random.nextInt(1000) / 7.0).append(padding).append('\t');
+            if (type < 5) {
+                rtn.append("x");
+            } else if (withErrors && type < 6) {
+                rtn.append("1\t2");
+            } else {
+                rtn.append(-random.nextDouble());
+            }
+            rtn.append(lineBreak);
+        }
+        //Trailing empty lines are ignored
+        return rtn.append(lineBreak).append(lineBreak).toString();
+    }
+
+    private interface Parse {
+        void parse(InputFormat format) throws Exception;
+    }
+
+    /**
+     * @return everything the parser provides (header, identifiers with their values, warnings and errors) as text
+     */
+    private static String parse(String input, Parse parse) throws Exception {
+        InputFormat format = new InputFormat();
+        ParserException exception = null;
+        try {
+            parse.parse(format);
+        } catch (ParserException e) {
+            exception = e;
+        }
+        return describe(format, exception);
+    }
+
+    private static String describe(InputFormat format, ParserException exception) {
+        StringBuilder rtn = new StringBuilder();
+        rtn.append("header: ").append(format.getHeaderColumnNames()).append("\n");
+        for (AnalysisIdentifier identifier : format.getAnalysisIdentifierSet()) {
+            rtn.append(identifier.getId()).append(" ").append(identifier.getExp()).append("\n");
+        }
+        rtn.append("warnings: ").append(format.getWarningResponses()).append("\n");
+        rtn.append("errors: ").append(format.getErrorResponses()).append("\n");
+        if (exception != null) rtn.append("exception: ").append(exception.getErrorMessages()).append("\n");
+        return rtn.toString();
+    }
+
+    private static int count(String text, String part) {
+        int rtn = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) rtn++;
+        return rtn;
+    }
+
+    private static void assertSameDouble(String value) {
+        double expected = Double.parseDouble(value);
+        double actual = InputFormat.parseDouble(value);
+        //Compared bit by bit, so -0.0 is not 0.0 and NaN is NaN
+        assertEquals(value, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+    }
+
+    /**
+     * Returns up to the given number of characters per read
+     */
+    private static class TrickleReader extends Reader {
+        private final String content;
+        private final int max;
+        private int pos = 0;
+
+        TrickleReader(String content, int max) {
+            this.content = content;
+            this.max = max;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (pos == content.length()) return -1;
+            int n = Math.min(Math.min(len, max), content.length() - pos);
+            content.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            //Nothing here
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.reactome.server.analysis.core.result;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import org.reactome.server.analysis.core.model.identifier.Identifier;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.result.model.EntityStatistics;
+import org.reactome.server.analysis.core.result.model.IdentifierSummary;
+import org.reactome.server.analysis.core.result.model.PathwaySummary;
+import org.reactome.server.analysis.core.result.utils.FlatResultStore;
+import org.reactome.server.analysis.core.result.utils.ResultDataUtils;
+import org.reactome.server.analysis.core.result.utils.ResultStore;
+import org.reactome.server.analysis.core.result.utils.TestResults;
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.*;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class AnalysisResultWriterTest extends TestCase {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public void testPathwaysCSV() throws Exception {
+        AnalysisStoredResult result = TestResults.getResult();
+        StringWriter out = new StringWriter();
+        AnalysisResultWriter.writePathwaysCSV(result, "ENTITIES_PVALUE", "ASC", "TOTAL", false, out);
+
+        List<List<String>> rows = parseCSV(out.toString());
+        assertEquals("Pathway identifier", rows.get(0).get(0));
+        List<PathwaySummary> expected = result.getResultSummary("ENTITIES_PVALUE", "ASC", "TOTAL", null, null, false).getPathways();
+        assertEquals(expected.size(), rows.size() - 1);
+        for (int i = 0; i < expected.size(); i++) {
+            List<String> row = rows.get(i + 1);
+            EntityStatistics entities = expected.get(i).getEntities();
+            assertEquals(expected.get(i).getStId(), row.get(0));
+            assertEquals(expected.get(i).getName(), row.get(1));
+            assertEquals(String.valueOf(entities.getFound()), row.get(2));
+            assertEquals(String.valueOf(entities.getpValue()), row.get(7));
+        }
+    }
+
+    public void testPathwaysJSON() throws Exception {
+        AnalysisStoredResult result = TestResults.getResult();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalysisResultWriter.writePathwaysJSON(result, "NAME", "DESC", "UNIPROT", false, out);
+
+        List<PathwaySummary> expected = result.getResultSummary("NAME", "DESC", "UNIPROT", null, null, false).getPathways();
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(expected)), mapper.readTree(out.toByteArray()));
+    }
+
+    public void testMappingCSV() throws Exception {
+        AnalysisStoredResult result = TestResults.getResult();
+        assertEquals(getMapping(result.getFoundEntitiesMap()), writeMapping(result, "TOTAL"));
+        assertEquals(getMapping(result.getFoundEntitiesMap(ResourceFactory.getMainResource("UNIPROT"))), writeMapping(result, "UNIPROT"));
+    }
+
+    public void testMappingCSVOfAStoredResult() throws Exception {
+        File directory = TestResults.createDirectory();
+        try {
+            ResultStore store = new FlatResultStore(directory.getPath());
+            ResultDataUtils.setCacheCapacity(0);
+            AnalysisStoredResult result = TestResults.getExpressionResult(100, 10);
+            ResultDataUtils.kryoSerialisation(result, store, "result");
+            AnalysisStoredResult read = ResultDataUtils.getAnalysisResult(store, "result");
+
+            Set<List<String>> mapping = writeMapping(read, "TOTAL");
+            assertEquals(10, mapping.size());
+            assertEquals(getMapping(result.getFoundEntitiesMap()), mapping);
+        } finally {
+            TestResults.delete(directory);
+        }
+    }
+
+    public void testNotFoundCSV() throws Exception {
+        AnalysisStoredResult result = TestResults.getExpressionResult(100, 10);
+        StringWriter out = new StringWriter();
+        AnalysisResultWriter.writeNotFoundCSV(result, out);
+
+        List<List<String>> rows = parseCSV(out.toString());
+        assertEquals(Arrays.asList("Not found", "col1", "col2"), rows.get(0));
+        List<IdentifierSummary> expected = result.getNotFoundIdentifiers();
+        assertEquals(90, expected.size());
+        assertEquals(expected.size(), rows.size() - 1);
+        for (int i = 0; i < expected.size(); i++) {
+            List<String> row = rows.get(i + 1);
+            assertEquals(expected.get(i).getId(), row.get(0));
+            for (int j = 0; j < expected.get(i).getExp().size(); j++) {
+                assertEquals(expected.get(i).getExp().get(j), Double.valueOf(row.get(j + 1)));
+            }
+        }
+    }
+
+    public void testNotFoundJSON() throws Exception {
+        AnalysisStoredResult result = TestResults.getExpressionResult(100, 10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AnalysisResultWriter.writeNotFoundJSON(result, out);
+        assertEquals(mapper.readTree(mapper.writeValueAsBytes(result.getNotFoundIdentifiers())), mapper.readTree(out.toByteArray()));
+    }
+
+    /**
+     * @return the rows written by writeMappingCSV (checking that none of them is written twice)
+     */
+    private static Set<List<String>> writeMapping(AnalysisStoredResult result, String resource) throws Exception {
+        StringWriter out = new StringWriter();
+        AnalysisResultWriter.writeMappingCSV(result, resource, out);
+        List<List<String>> rows = parseCSV(out.toString());
+        assertEquals(Arrays.asList("Submitted identifier", "Found identifier", "Resource"), rows.get(0));
+        Set<List<String>> rtn = new HashSet<>(rows.subList(1, rows.size()));
+        assertEquals(rows.size() - 1, rtn.size());
+        return rtn;
+    }
+
+    private static Set<List<String>> getMapping(MapSet<Identifier, MainIdentifier> map) {
+        Set<List<String>> rtn = new HashSet<>();
+        for (Identifier identifier : map.keySet()) {
+            for (MainIdentifier mainIdentifier : map.getElements(identifier)) {
+                rtn.add(Arrays.asList(identifier.getValue().getId(), mainIdentifier.getValue().getId(), mainIdentifier.getResource().getName()));
+            }
+        }
+        return rtn;
+    }
+
+    /**
+     * Fields might be quoted, with quotes written twice inside them
+     */
+    private static List<List<String>> parseCSV(String content) {
+        List<List<String>> rtn = new ArrayList<>();
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < content.length() && content.charAt(i + 1) == '"') {
+                    field.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                row.add(field.toString());
+                field.setLength(0);
+                rtn.add(row);
+                row = new ArrayList<>();
+            } else {
+                field.append(c);
+            }
+        }
+        return rtn;
+    }
+}
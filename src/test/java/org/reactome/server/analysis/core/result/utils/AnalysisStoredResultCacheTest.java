@@ -0,0 +1,99 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import junit.framework.TestCase;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class AnalysisStoredResultCacheTest extends TestCase {
+
+    private static final int SIZE = 1000;
+    // Estimated size in memory of the results stored with SIZE bytes
+    private static final long WEIGHT = SIZE * 8;
+
+    private File directory;
+    private ResultStore store;
+    private AnalysisStoredResult result;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestResults.createDirectory();
+        store = new FlatResultStore(directory.getPath());
+        result = TestResults.getResult();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestResults.delete(directory);
+    }
+
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(2 * WEIGHT);
+        put(cache, "a");
+        put(cache, "b");
+        assertNotNull(cache.get(store, "a"));
+
+        put(cache, "c");
+        assertNotNull(cache.get(store, "a"));
+        assertNull(cache.get(store, "b"));
+        assertNotNull(cache.get(store, "c"));
+    }
+
+    public void testCopiesHandedOut() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(WEIGHT);
+        put(cache, "a");
+        AnalysisStoredResult first = cache.get(store, "a");
+        AnalysisStoredResult second = cache.get(store, "a");
+        assertNotSame(result, first);
+        assertNotSame(first, second);
+        assertEquals(result.getPathways().size(), first.getPathways().size());
+    }
+
+    public void testTooBigNotCached() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(WEIGHT - 1);
+        put(cache, "a");
+        assertNull(cache.get(store, "a"));
+    }
+
+    public void testCapacityReduced() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(2 * WEIGHT);
+        put(cache, "a");
+        put(cache, "b");
+        cache.setCapacity(WEIGHT);
+        assertNull(cache.get(store, "a"));
+        assertNotNull(cache.get(store, "b"));
+    }
+
+    public void testReplacedInTheStore() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(WEIGHT);
+        put(cache, "a");
+        store.write("a", os -> os.write(new byte[SIZE - 1]));
+        assertNull(cache.get(store, "a"));
+    }
+
+    public void testDeletedFromTheStore() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(WEIGHT);
+        put(cache, "a");
+        assertTrue(store.delete("a"));
+        assertNull(cache.get(store, "a"));
+    }
+
+    public void testRemoved() throws Exception {
+        AnalysisStoredResultCache cache = new AnalysisStoredResultCache(WEIGHT);
+        put(cache, "a");
+        cache.remove(store.getKey("a"));
+        assertNull(cache.get(store, "a"));
+    }
+
+    /**
+     * Only the length of the stored result is taken into account, so the content is not the serialised result
+     */
+    private void put(AnalysisStoredResultCache cache, String name) throws IOException {
+        store.write(name, os -> os.write(new byte[SIZE]));
+        cache.put(store, name, result);
+    }
+}
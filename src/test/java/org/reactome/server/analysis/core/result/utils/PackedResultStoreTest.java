@@ -0,0 +1,167 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import junit.framework.TestCase;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class PackedResultStoreTest extends TestCase {
+
+    private static final int SIZE = 10000;
+
+    private File directory;
+    private PackedResultStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestResults.createDirectory();
+        store = new PackedResultStore(directory.getPath());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.close();
+        TestResults.delete(directory);
+    }
+
+    public void testWriteThenRead() throws Exception {
+        write(store, "a");
+        write(store, "b");
+        assertContent(store, "a");
+        assertContent(store, "b");
+        assertEquals(SIZE, store.length("a"));
+
+        try (InputStream is = store.read("a", 10, 20)) {
+            byte[] part = new byte[20];
+            new DataInputStream(is).readFully(part);
+            assertEquals(-1, is.read());
+            assertEquals(content("a", 20)[0], part[0]);
+        }
+    }
+
+    public void testReplaceThenReopen() throws Exception {
+        write(store, "a");
+        store.write("a", os -> os.write(content("b", SIZE)));
+        write(store, "b");
+        store.close();
+
+        store = new PackedResultStore(directory.getPath());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), store.getNames());
+        try (InputStream is = store.read("a")) {
+            byte[] b = new byte[SIZE];
+            new DataInputStream(is).readFully(b);
+            assertEquals(content("b", 1)[0], b[0]);
+        }
+        assertContent(store, "b");
+    }
+
+    public void testDelete() throws Exception {
+        write(store, "a");
+        assertTrue(store.delete("a"));
+        assertFalse(store.delete("a"));
+        assertEquals(0, store.length("a"));
+        try {
+            store.read("a").close();
+            fail("'a' has been deleted");
+        } catch (FileNotFoundException e) {
+            //Expected
+        }
+        store.close();
+
+        store = new PackedResultStore(directory.getPath());
+        assertTrue(store.getNames().isEmpty());
+    }
+
+    public void testFailedWrite() throws Exception {
+        write(store, "a");
+        try {
+            store.write("b", os -> {
+                os.write(content("b", SIZE));
+                throw new IOException("Failed on purpose");
+            });
+            fail("The write should have failed");
+        } catch (IOException e) {
+            //Expected
+        }
+        assertEquals(new HashSet<>(Arrays.asList("a")), store.getNames());
+        write(store, "c");
+        assertContent(store, "a");
+        assertContent(store, "c");
+    }
+
+    public void testCompactionWhileReading() throws Exception {
+        for (int i = 0; i < 200; i++) write(store, "r" + i);
+        for (int i = 0; i < 100; i++) store.delete("r" + i);
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 200; i < 400; i++) {
+                    write(store, "r" + i);
+                    if (i % 3 == 0) store.delete("r" + (i - 50));
+                }
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        //Only the results that are not deleted by the writer are read
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) assertContent(store, "r" + (100 + i % 50));
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        writer.start();
+        reader.start();
+        store.compact();
+        store.compact();
+        writer.join();
+        reader.join();
+        if (error.get() != null) throw new AssertionError(error.get());
+
+        Set<String> names = store.getNames();
+        assertTrue(names.contains("r399"));
+        assertFalse(names.contains("r0"));
+        store.compact();
+        store.close();
+
+        store = new PackedResultStore(directory.getPath());
+        assertEquals(names, store.getNames());
+        for (String name : names) assertContent(store, name);
+    }
+
+    private static byte[] content(String name, int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) name.hashCode());
+        return content;
+    }
+
+    private static void write(ResultStore store, String name) {
+        try {
+            store.write(name, os -> os.write(content(name, SIZE)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void assertContent(ResultStore store, String name) throws IOException {
+        try (InputStream is = store.read(name)) {
+            byte[] content = new byte[SIZE];
+            new DataInputStream(is).readFully(content);
+            assertEquals(-1, is.read());
+            assertTrue(name, Arrays.equals(content(name, SIZE), content));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import junit.framework.TestCase;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class ResultWriteQueueTest extends TestCase {
+
+    private File directory;
+    private TestStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestResults.createDirectory();
+        store = new TestStore(directory.getPath());
+        ResultDataUtils.setCacheCapacity(0); //Always read from the store
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.latch.countDown();
+        TestResults.delete(directory);
+    }
+
+    public void testWriteThenRead() throws Exception {
+        ResultWriteQueue queue = new ResultWriteQueue(10);
+        AnalysisStoredResult result = TestResults.getResult();
+        queue.add(store, "a", result);
+        queue.flush();
+
+        assertEquals(0, queue.size());
+        assertNull(queue.get(store, "a"));
+        AnalysisStoredResult read = ResultDataUtils.getAnalysisResult(store, "a");
+        assertEquals(result.getPathways().size(), read.getPathways().size());
+    }
+
+    public void testFailedWrite() throws Exception {
+        ResultWriteQueue queue = new ResultWriteQueue(10);
+        store.failures.set(1);
+        queue.add(store, "a", TestResults.getResult());
+        queue.flush();
+
+        //Kept pending (and served) until it is written
+        assertEquals(1, queue.size());
+        assertNotNull(queue.get(store, "a"));
+        assertEquals(0, store.length("a"));
+
+        //Retried after a second
+        long timeout = System.currentTimeMillis() + 5_000L;
+        while (queue.size() > 0 && System.currentTimeMillis() < timeout) Thread.sleep(50);
+        assertEquals(0, queue.size());
+        assertNull(queue.get(store, "a"));
+        assertTrue(store.length("a") > 0);
+    }
+
+    public void testFullQueue() throws Exception {
+        ResultWriteQueue queue = new ResultWriteQueue(1);
+        store.blocked = "a";
+        queue.add(store, "a", TestResults.getResult());
+        store.writing.await();
+
+        //"a" is still pending, so "b" is written straight away
+        queue.add(store, "b", TestResults.getResult());
+        assertTrue(store.length("b") > 0);
+        assertNull(queue.get(store, "b"));
+        assertNotNull(queue.get(store, "a"));
+
+        store.failures.set(1);
+        try {
+            queue.add(store, "c", TestResults.getResult());
+            fail("The result written straight away has failed");
+        } catch (UncheckedIOException e) {
+            //Nothing here
+        }
+
+        store.latch.countDown();
+        queue.flush();
+        assertEquals(0, queue.size());
+        assertTrue(store.length("a") > 0);
+    }
+
+    public void testRemovedBeforeRetried() throws Exception {
+        ResultWriteQueue queue = new ResultWriteQueue(10);
+        store.failures.set(1);
+        queue.add(store, "a", TestResults.getResult());
+        queue.flush();
+        assertEquals(1, queue.size());
+
+        assertTrue(queue.remove(store, "a"));
+        assertEquals(0, queue.size());
+        assertNull(queue.get(store, "a"));
+        assertFalse(queue.remove(store, "a"));
+
+        //Not written back when the retry was due
+        Thread.sleep(2_000L);
+        assertEquals(0, store.length("a"));
+    }
+
+    public void testRemovedWhileWritten() throws Exception {
+        ResultWriteQueue queue = new ResultWriteQueue(10);
+        store.blocked = "a";
+        queue.add(store, "a", TestResults.getResult());
+        store.writing.await();
+
+        //The way ResultDataUtils.delete does it
+        Thread delete = new Thread(() -> {
+            queue.remove(store, "a");
+            store.delete("a");
+        });
+        delete.start();
+        delete.join(500L);
+        assertTrue("Waits for the write in progress", delete.isAlive());
+
+        store.latch.countDown();
+        delete.join();
+        queue.flush();
+        assertEquals(0, queue.size());
+        assertEquals(0, store.length("a"));
+    }
+
+    public void testDeletedWhilePending() throws Exception {
+        store.failures.set(1);
+        ResultDataUtils.kryoSerialisationAsync(TestResults.getResult(), store, "a");
+        ResultDataUtils.flushPendingResults();
+        assertNotNull(ResultDataUtils.getAnalysisResult(store, "a"));
+
+        ResultDataUtils.delete(store, "a");
+        ResultDataUtils.flushPendingResults();
+        Thread.sleep(2_000L);
+        assertEquals(0, store.length("a"));
+        try {
+            ResultDataUtils.getAnalysisResult(store, "a");
+            fail("The result has been deleted");
+        } catch (FileNotFoundException e) {
+            //Nothing here
+        }
+    }
+
+    /**
+     * Fails the given number of writes and blocks the write of the given name until the latch is released
+     */
+    private static class TestStore extends FlatResultStore {
+
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch latch = new CountDownLatch(1);
+        volatile String blocked;
+
+        TestStore(String directory) {
+            super(directory);
+        }
+
+        @Override
+        public void write(String name, ContentWriter writer) throws IOException {
+            if (name.equals(blocked)) {
+                writing.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failures.getAndDecrement() > 0) throw new IOException("Failed on purpose");
+            super.write(name, writer);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import junit.framework.TestCase;
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.PathwayNodeData;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.exception.ResourceGoneException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class SectionedResultFileTest extends TestCase {
+
+    private static final String NAME = "result";
+
+    private File directory;
+    private ResultStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestResults.createDirectory();
+        store = new FlatResultStore(directory.getPath());
+        ResultDataUtils.setCacheCapacity(0); //Always read from the store
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TestResults.delete(directory);
+    }
+
+    public void testWriteThenRead() throws Exception {
+        AnalysisStoredResult result = TestResults.getResult();
+        ResultDataUtils.kryoSerialisation(result, store, NAME);
+        AnalysisStoredResult read = ResultDataUtils.getAnalysisResult(store, NAME);
+
+        assertEquals(result.getNotFound(), read.getNotFound());
+        assertEquals(result.getPathways().size(), read.getPathways().size());
+        for (int i = 0; i < result.getPathways().size(); i++) {
+            PathwayNodeData expected = result.getPathways().get(i).getData();
+            PathwayNodeData actual = read.getPathways().get(i).getData();
+            assertEquals(expected.getEntitiesPValue(), actual.getEntitiesPValue());
+            assertEquals(expected.getEntitiesFound(), actual.getEntitiesFound());
+            assertEquals(expected.getReactionsFound(), actual.getReactionsFound());
+            assertEquals(expected.getExpressionValuesAvg(), actual.getExpressionValuesAvg());
+            //The details are read on demand
+            assertFalse(actual.getFoundEntities().isEmpty());
+            assertEquals(getExpression(expected.getFoundEntities()), getExpression(actual.getFoundEntities()));
+            assertEquals(expected.getReactions(), actual.getReactions());
+        }
+    }
+
+    public void testExpressionValues() throws Exception {
+        AnalysisStoredResult result = TestResults.getExpressionResult(100, 10);
+        ResultDataUtils.kryoSerialisation(result, store, NAME);
+        AnalysisStoredResult read = ResultDataUtils.getAnalysisResult(store, NAME);
+
+        assertEquals(90, read.getNotFound().size());
+        assertEquals(getExpression(result.getNotFound()), getExpression(read.getNotFound()));
+        PathwayNodeData expected = result.getPathways().get(0).getData();
+        PathwayNodeData actual = read.getPathways().get(0).getData();
+        assertEquals(expected.getExpressionValuesAvg(), actual.getExpressionValuesAvg());
+        assertEquals(10, actual.getFoundEntities().size());
+        assertEquals(getExpression(expected.getFoundEntities()), getExpression(actual.getFoundEntities()));
+    }
+
+    public void testStatisticsWithoutTheFoundValues() throws Exception {
+        ResultDataUtils.kryoSerialisation(TestResults.getExpressionResult(20000, 19990), store, NAME);
+        //The whole matrix takes 16 bytes per identifier (two columns)
+        assertTrue(getSectionLengths()[1] < 20000 * 16 / 10);
+    }
+
+    public void testTableWithoutTheNotFoundValues() throws Exception {
+        ResultDataUtils.kryoSerialisation(TestResults.getExpressionResult(20000, 10), store, NAME);
+        assertTrue(getSectionLengths()[0] < 20000 * 16 / 10);
+    }
+
+    public void testTruncatedFooter() throws Exception {
+        ResultDataUtils.kryoSerialisation(TestResults.getResult(), store, NAME);
+        try (RandomAccessFile file = new RandomAccessFile(store.getKey(NAME), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        assertGone();
+    }
+
+    public void testVersionMismatch() throws Exception {
+        ResultDataUtils.kryoSerialisation(TestResults.getResult(), store, NAME);
+        try (RandomAccessFile file = new RandomAccessFile(store.getKey(NAME), "rw")) {
+            file.seek(Integer.BYTES); //[int MAGIC][int VERSION]
+            int version = file.readInt();
+            file.seek(Integer.BYTES);
+            file.writeInt(version - 1);
+        }
+        assertGone();
+    }
+
+    public void testStoredAsAWhole() throws Exception {
+        store.write(NAME, os -> os.write("Kryo serialised result".getBytes(StandardCharsets.UTF_8)));
+        assertGone();
+    }
+
+    public void testDeletedBeforeReadingDetails() throws Exception {
+        ResultDataUtils.kryoSerialisation(TestResults.getResult(), store, NAME);
+        AnalysisStoredResult read = ResultDataUtils.getAnalysisResult(store, NAME);
+        assertTrue(store.delete(NAME));
+        try {
+            read.getPathways().get(0).getData().getFoundEntities();
+            fail("The details of a deleted result cannot be read");
+        } catch (ResourceGoneException e) {
+            //Nothing here
+        }
+    }
+
+    /**
+     * @return the length of the table and the length of the head of the stored result
+     */
+    private long[] getSectionLengths() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(store.getKey(NAME), "r")) {
+            file.seek(file.length() - Long.BYTES - Integer.BYTES); //[long offsets table position][int MAGIC]
+            long offsetsPosition = file.readLong();
+            file.seek(offsetsPosition); //[long table offset][long head offset]...
+            long tableOffset = file.readLong();
+            long headOffset = file.readLong();
+            return new long[]{headOffset - tableOffset, offsetsPosition - headOffset};
+        }
+    }
+
+    private void assertGone() {
+        try {
+            ResultDataUtils.getAnalysisResult(store, NAME);
+            fail(NAME + " should not be read");
+        } catch (FileNotFoundException e) {
+            //Nothing here
+        }
+    }
+
+    private static Map<String, List<Double>> getExpression(Set<AnalysisIdentifier> identifiers) {
+        Map<String, List<Double>> rtn = new HashMap<>();
+        for (AnalysisIdentifier identifier : identifiers) rtn.put(identifier.getId(), identifier.getExp());
+        return rtn;
+    }
+}
@@ -0,0 +1,92 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactome.server.analysis.core.model.*;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.identifier.OtherIdentifier;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+import org.reactome.server.analysis.core.parser.exception.ParserException;
+import org.reactome.server.analysis.core.result.AnalysisStoredResult;
+import org.reactome.server.analysis.core.result.external.ExternalAnalysisResult;
+import org.reactome.server.analysis.core.result.model.AnalysisSummary;
+import org.reactome.server.analysis.core.util.InputUtils;
+import org.reactome.server.analysis.core.util.MapSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Result and working directories used by the result tests
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public abstract class TestResults {
+
+    /**
+     * @return the result kept in "result.json" (as provided by external services)
+     */
+    public static AnalysisStoredResult getResult() throws IOException {
+        try (InputStream is = TestResults.class.getResourceAsStream("/result.json")) {
+            return new AnalysisStoredResult("test", new ObjectMapper().readValue(is, ExternalAnalysisResult.class));
+        }
+    }
+
+    /**
+     * Analyses an expression data set with the given number of identifiers (the first found ones are in the only
+     * pathway of the hierarchy and the rest are not found), so all the identifiers share the submitted matrix
+     */
+    public static AnalysisStoredResult getExpressionResult(int identifiers, int found) throws IOException, ParserException {
+        StringBuilder input = new StringBuilder("#id\tcol1\tcol2\n");
+        for (int i = 0; i < identifiers; i++) input.append("P").append(i).append("\t").append(i).append("\t").append(-i).append("\n");
+        UserData userData = InputUtils.getUserData(input.toString());
+
+        MainResource uniprot = ResourceFactory.getMainResource("UNIPROT");
+        SpeciesNode human = SpeciesNodeFactory.getHumanNode();
+        PathwayHierarchy hierarchy = new PathwayHierarchy(human);
+        PathwayRoot pathway = new PathwayRoot(hierarchy, "R-HSA-1", 1L, "Pathway", true, false);
+        hierarchy.getChildren().add(pathway);
+        MapSet<Long, PathwayNode> locations = new MapSet<>();
+        locations.add(1L, pathway);
+        Set<AnalysisReaction> reactions = Collections.singleton(new AnalysisReaction(2L, "R-HSA-2"));
+
+        //The pathway contains twice the found ones
+        for (int i = 0; i < 2 * found; i++) {
+            pathway.process(new MainIdentifier(uniprot, new AnalysisIdentifier("P" + i)), reactions);
+        }
+        hierarchy.setCountersAndCleanUp();
+
+        HierarchiesData data = new HierarchiesData(Collections.singletonMap(human, hierarchy), locations);
+        int n = 0;
+        for (AnalysisIdentifier identifier : userData.getIdentifiers()) {
+            if (n++ < found) {
+                data.process(1L, new OtherIdentifier(uniprot, identifier), new MainIdentifier(uniprot, identifier), reactions);
+            } else {
+                data.addNotFound(identifier);
+            }
+        }
+        data.setResultStatistics(Collections.singletonMap(uniprot, found), identifiers - found, false);
+
+        AnalysisStoredResult rtn = new AnalysisStoredResult(userData, data);
+        rtn.setHitPathways(data.getUniqueHitPathways(null));
+        rtn.setSummary(new AnalysisSummary("test", false, false, userData.getSampleName(), AnalysisType.EXPRESSION, false, "test", true));
+        return rtn;
+    }
+
+    public static File createDirectory() throws IOException {
+        return Files.createTempDirectory("analysis-core").toFile();
+    }
+
+    public static void delete(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.reactome.server.analysis.core.result.utils;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class TokenizerTest extends TestCase {
+
+    private File directory;
+    private Path file;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = TestResults.createDirectory();
+        file = directory.toPath().resolve("tokens.txt");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Tokenizer.closeCacheFile();
+        TestResults.delete(directory);
+    }
+
+    public void testConcurrentGetOrCreateToken() throws Exception {
+        int threads = 8;
+        int keys = 500;
+        Map<String, Set<String>> tokens = new ConcurrentHashMap<>();
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> list = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    List<Integer> order = new ArrayList<>();
+                    for (int k = 0; k < keys; k++) order.add(k);
+                    Collections.shuffle(order, new Random(seed));
+                    barrier.await();
+                    for (Integer k : order) {
+                        String md5 = "concurrent" + k;
+                        tokens.computeIfAbsent(md5, m -> ConcurrentHashMap.newKeySet()).add(Tokenizer.getOrCreateToken(md5, false, false));
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+            list.add(thread);
+            thread.start();
+        }
+        for (Thread thread : list) thread.join();
+        if (error.get() != null) throw new AssertionError(error.get());
+
+        //Every request for the same md5 gets the same token and every md5 gets its own one
+        Set<String> names = new HashSet<>();
+        for (int k = 0; k < keys; k++) {
+            String md5 = "concurrent" + k;
+            assertEquals(1, tokens.get(md5).size());
+            String token = tokens.get(md5).iterator().next();
+            assertEquals(token, Tokenizer.getOrCreateToken(md5, false, false));
+            assertTrue(Tokenizer.hasToken(md5, false, false));
+            assertTrue(names.add(Tokenizer.getName(token)));
+        }
+        assertFalse(Tokenizer.hasToken("concurrent0", true, false));
+    }
+
+    public void testCacheFileReloaded() throws Exception {
+        Tokenizer.setCacheFile(file.toString());
+        String a = Tokenizer.getOrCreateToken("reloaded-a", false, false);
+        String b = Tokenizer.getOrCreateToken("reloaded-b", false, false);
+        assertTrue(Tokenizer.removeAssociatedName(Tokenizer.getName(b)));
+        Tokenizer.closeCacheFile();
+
+        //Not appended to the file anymore
+        assertTrue(Tokenizer.removeAssociatedName(Tokenizer.getName(a)));
+        assertFalse(Tokenizer.hasToken("reloaded-a", false, false));
+
+        Tokenizer.setCacheFile(file.toString());
+        assertTrue(Tokenizer.hasToken("reloaded-a", false, false));
+        assertEquals(a, Tokenizer.getOrCreateToken("reloaded-a", false, false));
+        assertFalse(Tokenizer.hasToken("reloaded-b", false, false));
+    }
+
+    public void testCacheFileCompacted() throws Exception {
+        int compactAfterLines = Tokenizer.COMPACT_AFTER_LINES;
+        Tokenizer.COMPACT_AFTER_LINES = 50;
+        try {
+            Tokenizer.setCacheFile(file.toString());
+            Map<String, String> alive = new HashMap<>();
+            for (int i = 0; i < 500; i++) {
+                String md5 = "compacted" + i;
+                String token = Tokenizer.getOrCreateToken(md5, false, false);
+                if (i % 2 == 0) {
+                    Tokenizer.removeAssociatedName(Tokenizer.getName(token));
+                } else {
+                    alive.put(md5 + false + false, token);
+                }
+            }
+            //750 lines appended, but the file is rewritten with the alive ones once there are no more waiting
+            long timeout = System.currentTimeMillis() + 5_000L;
+            while (countCompactedLines() >= 500 && System.currentTimeMillis() < timeout) Thread.sleep(50);
+            Tokenizer.closeCacheFile();
+            assertTrue(countCompactedLines() < 500);
+            assertEquals(0, Tokenizer.getDroppedCacheLines());
+
+            Map<String, String> loaded = load();
+            for (Map.Entry<String, String> entry : alive.entrySet()) {
+                assertEquals(entry.getValue(), loaded.get(entry.getKey()));
+            }
+            for (int i = 0; i < 500; i += 2) {
+                assertFalse(loaded.containsKey("compacted" + i + false + false));
+            }
+        } finally {
+            Tokenizer.COMPACT_AFTER_LINES = compactAfterLines;
+        }
+    }
+
+    /**
+     * @return the number of lines of the cache file for the tokens created in testCacheFileCompacted
+     */
+    private long countCompactedLines() throws Exception {
+        return Files.readAllLines(file, StandardCharsets.UTF_8).stream().filter(l -> l.startsWith("compacted") || l.startsWith("\t")).count();
+    }
+
+    /**
+     * @return the md5 to token entries of the cache file (applying the removals the way Tokenizer does)
+     */
+    private Map<String, String> load() throws Exception {
+        Map<String, String> rtn = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            String key = line.substring(0, tab);
+            String token = line.substring(tab + 1);
+            if (key.isEmpty()) {
+                rtn.values().remove(token);
+            } else {
+                rtn.put(key, token);
+            }
+        }
+        return rtn;
+    }
+}
@@ -0,0 +1,107 @@
+package org.reactome.server.analysis.core.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reactome.server.analysis.core.model.AnalysisIdentifier;
+import org.reactome.server.analysis.core.model.AnalysisReaction;
+import org.reactome.server.analysis.core.model.EntityNode;
+import org.reactome.server.analysis.core.model.InteractorNode;
+import org.reactome.server.analysis.core.model.SpeciesNodeFactory;
+import org.reactome.server.analysis.core.model.identifier.MainIdentifier;
+import org.reactome.server.analysis.core.model.resource.MainResource;
+import org.reactome.server.analysis.core.model.resource.ResourceFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocations of traversing the copies (the way values(), getPathwayIds() and getInteractsWith() used
+ * to work) with the views that replaced them. The "copy" benchmarks rebuild the set the way the previous versions
+ * did on every call. Run it with the test classpath (the main method adds the GC profiler) and compare the
+ * gc.alloc.rate.norm (bytes per operation) of every pair.
+ *
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapSetBenchmark {
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private MapSet<Long, MainIdentifier> mapSet;
+    private EntityNode entityNode;
+    private InteractorNode interactorNode;
+
+    @Setup
+    public void setUp() {
+        MainResource resource = ResourceFactory.getMainResource("UNIPROT");
+        mapSet = new MapSet<>();
+        interactorNode = new InteractorNode("P00000");
+        MapSet<Long, AnalysisReaction> reactions = new MapSet<>();
+        for (long pathway = 0; pathway < size; pathway++) {
+            reactions.add(pathway, new AnalysisReaction(pathway, "R-HSA-" + pathway));
+            //Every identifier is in two pathways, so the copies and the views do not contain the same elements
+            for (int i = 0; i < 5; i++) {
+                MainIdentifier identifier = new MainIdentifier(resource, new AnalysisIdentifier("P" + (pathway / 2 * 5 + i)));
+                mapSet.add(pathway, identifier);
+                interactorNode.addInteractsWith(pathway, identifier);
+            }
+        }
+        entityNode = new EntityNode(SpeciesNodeFactory.getHumanNode(), resource, "P00000", new ArrayList<>());
+        entityNode.addPathwayReactions(reactions);
+    }
+
+    @Benchmark
+    public void values(Blackhole bh) {
+        for (MainIdentifier identifier : mapSet.values()) bh.consume(identifier);
+    }
+
+    @Benchmark
+    public void elements(Blackhole bh) {
+        for (MainIdentifier identifier : mapSet.elements()) bh.consume(identifier);
+    }
+
+    @Benchmark
+    public void pathwayIdsCopy(Blackhole bh) {
+        Set<Long> pathwayIds = new HashSet<>(entityNode.getPathwayReactions().keySet());
+        for (Long pathwayId : pathwayIds) bh.consume(pathwayId);
+    }
+
+    @Benchmark
+    public void pathwayIdsView(Blackhole bh) {
+        for (Long pathwayId : entityNode.getPathwayIds()) bh.consume(pathwayId);
+    }
+
+    /**
+     * The interactor keeps a MapSet equal to mapSet and getInteractsWith() used to return its values() on every call
+     */
+    @Benchmark
+    public void interactsWithCopy(Blackhole bh) {
+        for (MainIdentifier identifier : mapSet.values()) bh.consume(identifier);
+    }
+
+    @Benchmark
+    public void interactsWithView(Blackhole bh) {
+        for (MainIdentifier identifier : interactorNode.getInteractsWith()) bh.consume(identifier);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MapSetBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,47 @@
+package org.reactome.server.analysis.core.util;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * @author Antonio Fabregat <fabregat@ebi.ac.uk>
+ */
+public class MapSetTest extends TestCase {
+
+    private MapSet<String, Integer> mapSet;
+
+    @Override
+    protected void setUp() throws Exception {
+        mapSet = new MapSet<>();
+        mapSet.add("a", Arrays.asList(1, 2, 3));
+        mapSet.add("b", Arrays.asList(3, 4));
+        mapSet.add("c", new HashSet<>());
+    }
+
+    public void testValuesWithoutDuplicates() {
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 4)), mapSet.values());
+    }
+
+    public void testElementsOncePerSet() {
+        List<Integer> elements = new ArrayList<>();
+        for (Integer element : mapSet.elements()) elements.add(element);
+        Collections.sort(elements);
+        assertEquals(Arrays.asList(1, 2, 3, 3, 4), elements);
+        assertEquals(elements.size(), mapSet.elementsCount());
+        assertEquals(mapSet.values(), new HashSet<>(elements));
+    }
+
+    public void testElementsIteratedAgain() {
+        Iterable<Integer> elements = mapSet.elements();
+        int count = 0;
+        for (Integer ignored : elements) count++;
+        for (Integer ignored : elements) count++;
+        assertEquals(10, count);
+    }
+
+    public void testElementsOfAnEmptyMapSet() {
+        assertFalse(new MapSet<String, Integer>().elements().iterator().hasNext());
+        assertEquals(0, new MapSet<String, Integer>().elementsCount());
+    }
+}